@@ -0,0 +1,42 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import org.mogware.messagebus.serialization.Serializer;
+
+final class BenchSerializer implements Serializer {
+    @Override
+    public String getContentEncoding() {
+        return "";
+    }
+
+    @Override
+    public String getContentFormat() {
+        return "java";
+    }
+
+    @Override
+    public void serialize(OutputStream output, Object graph) {
+        try (ObjectOutputStream stream = new ObjectOutputStream(output)) {
+            stream.writeObject(graph);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public Object deserialize(InputStream input, Class type, String format,
+            String contentEncoding) {
+        try (ObjectInputStream stream = new ObjectInputStream(input)) {
+            return stream.readObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+}
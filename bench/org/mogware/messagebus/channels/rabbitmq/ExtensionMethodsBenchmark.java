@@ -0,0 +1,66 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtensionMethodsBenchmark {
+    private final LocalDateTime dispatched = LocalDateTime.now();
+    private final Date timestamp = new Date();
+    private final URI address = URI.create("fanout://java-lang-string/");
+    private final String typeName = String.class.getName();
+    private final String missingTypeName = "org.example.MissingMessage";
+    private final String expiration = "60000";
+
+    @Benchmark
+    public Class getType() {
+        return ExtensionMethods.getType(this.typeName);
+    }
+
+    @Benchmark
+    public Class getMissingType() {
+        return ExtensionMethods.getType(this.missingTypeName);
+    }
+
+    @Benchmark
+    public LocalDateTime toDateTime() {
+        return ExtensionMethods.toDateTime(this.expiration, this.dispatched);
+    }
+
+    @Benchmark
+    public LocalDateTime toDateTimeFromDate() {
+        return ExtensionMethods.toDateTime(this.timestamp);
+    }
+
+    @Benchmark
+    public long toExpirationMillis() {
+        return ExtensionMethods.toExpirationMillis(
+                this.expiration, this.timestamp);
+    }
+
+    @Benchmark
+    public PublicationAddress toPublicationAddress() {
+        return ExtensionMethods.toPublicationAddress(this.address);
+    }
+
+    @Benchmark
+    public String normalizeName() {
+        return ExtensionMethods.normalizeName(this.typeName);
+    }
+}
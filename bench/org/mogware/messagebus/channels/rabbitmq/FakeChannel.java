@@ -0,0 +1,113 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Consumer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.infra.Blackhole;
+
+final class FakeChannel implements InvocationHandler {
+    private final Object writeLock = new Object();
+    private final AtomicLong nextPublishSeqNo = new AtomicLong(1);
+    private final LongAdder published = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final long writeCost;
+    private volatile Consumer consumer;
+    private volatile ConfirmListener confirmListener;
+
+    FakeChannel() {
+        this(0);
+    }
+
+    FakeChannel(long writeCost) {
+        this.writeCost = writeCost;
+    }
+
+    Channel create() {
+        return (Channel) Proxy.newProxyInstance(
+                Channel.class.getClassLoader(),
+                new Class[] { Channel.class }, this);
+    }
+
+    Consumer getConsumer() {
+        return this.consumer;
+    }
+
+    long getPublished() {
+        return this.published.sum();
+    }
+
+    long getAcknowledged() {
+        return this.acknowledged.sum();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+        switch (method.getName()) {
+            case "basicConsume":
+                this.consumer = (Consumer) args[args.length - 1];
+                return "bench-consumer";
+            case "basicPublish":
+                this.publish();
+                return null;
+            case "basicAck":
+                this.acknowledged.increment();
+                return null;
+            case "getNextPublishSeqNo":
+                return this.nextPublishSeqNo.get();
+            case "addConfirmListener":
+                this.confirmListener = (ConfirmListener) args[0];
+                return null;
+            case "isOpen":
+                return true;
+            case "getCloseReason":
+                return null;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "FakeChannel@" + System.identityHashCode(proxy);
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private void publish() throws Exception {
+        long sequence;
+        synchronized (this.writeLock) {
+            if (this.writeCost > 0)
+                Blackhole.consumeCPU(this.writeCost);
+            sequence = this.nextPublishSeqNo.getAndIncrement();
+        }
+        this.published.increment();
+        ConfirmListener listener = this.confirmListener;
+        if (listener != null)
+            listener.handleAck(sequence, false);
+    }
+
+    private static Object defaultValue(Class type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        if (type == double.class)
+            return 0d;
+        if (type == float.class)
+            return 0f;
+        if (type == short.class)
+            return (short) 0;
+        if (type == byte.class)
+            return (byte) 0;
+        if (type == char.class)
+            return (char) 0;
+        return null;
+    }
+}
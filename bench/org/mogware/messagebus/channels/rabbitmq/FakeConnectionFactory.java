@@ -0,0 +1,32 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+
+final class FakeConnectionFactory extends ConnectionFactory {
+    @Override
+    public Connection newConnection() throws IOException {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createChannel":
+                            return new FakeChannel().create();
+                        case "isOpen":
+                            return true;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "FakeConnection@" +
+                                    System.identityHashCode(proxy);
+                        default:
+                            return method.getReturnType() == int.class ?
+                                    (Object) 0 : null;
+                    }
+                });
+    }
+}
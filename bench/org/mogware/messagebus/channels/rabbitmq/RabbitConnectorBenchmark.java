@@ -0,0 +1,52 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.mogware.messagebus.MessagingChannel;
+import org.mogware.system.threading.TimeSpan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitConnectorBenchmark {
+    private static final String groupName = "bench";
+
+    private RabbitConnector connector;
+
+    @Setup
+    public void setup() {
+        RabbitChannelGroupConfiguration config =
+                new RabbitChannelGroupConfiguration()
+                        .withGroupName(groupName)
+                        .withWorkers(8, 64);
+        this.connector = new RabbitConnector(new FakeConnectionFactory(),
+                TimeSpan.fromSeconds(1), Collections.singletonList(config));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void connect() {
+        MessagingChannel channel = this.connector.connect(groupName);
+        channel.dispose();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.connector.dispose();
+    }
+}
@@ -0,0 +1,48 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitDispatchTableBenchmark {
+    @Param({"1", "16"})
+    public int subscribers;
+
+    private RabbitDispatchTable table;
+
+    @Setup
+    public void setup() {
+        this.table = new RabbitDispatchTable();
+        for (int i = 0; i < this.subscribers; i++)
+            this.table.addSubscriber(
+                    URI.create("direct://default/subscriber-" + i),
+                    String.class, null);
+    }
+
+    @Benchmark
+    public List<URI> getUri() {
+        return this.table.getUri(String.class);
+    }
+
+    @Benchmark
+    public List<URI> getUriForUnknownType() {
+        return this.table.getUri(Integer.class);
+    }
+}
@@ -0,0 +1,82 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.QueueingConsumer.Delivery;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.mogware.messagebus.ChannelMessage;
+import org.mogware.system.Guid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitMessageAdapterBenchmark {
+    @Param({"1024", "65536", "1048576"})
+    public int payloadSize;
+
+    @Param({"0", "512"})
+    public int compressionThreshold;
+
+    private RabbitMessageAdapter adapter;
+    private ChannelMessage message;
+    private Delivery delivery;
+
+    @Setup
+    public void setup() {
+        RabbitChannelGroupConfiguration config =
+                new RabbitChannelGroupConfiguration()
+                        .withSerializer(new BenchSerializer());
+        if (this.compressionThreshold > 0)
+            config.withCompression(this.compressionThreshold);
+        this.adapter = config.getMessageAdapter();
+        this.message = createMessage(this.payloadSize);
+        this.delivery = this.adapter.build(
+                this.message, new BasicProperties());
+    }
+
+    @Benchmark
+    public Delivery buildOutbound() {
+        return this.adapter.build(this.message, new BasicProperties());
+    }
+
+    @Benchmark
+    public ChannelMessage buildInbound() {
+        return this.adapter.build(this.delivery);
+    }
+
+    static ChannelMessage createMessage(int payloadSize) {
+        char[] text = new char[payloadSize];
+        for (int i = 0; i < text.length; i++)
+            text[i] = (char) ('a' + i % 26);
+        List<Object> payload = new ArrayList<>(
+                Arrays.asList(new String(text)));
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-bench-header", "value");
+        ChannelMessage message = new ChannelMessage(Guid.newGuid(),
+                Guid.newGuid(), URI.create("direct://default/bench"),
+                headers, payload);
+        message.setExpiration(LocalDateTime.MAX);
+        message.setPersistent(true);
+        return message;
+    }
+}
@@ -0,0 +1,87 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitPublisherBenchmark {
+    @Param({"direct", "ring"})
+    public String mode;
+
+    @Param({"64"})
+    public long writeCost;
+
+    private final PublicationAddress address =
+            new PublicationAddress("fanout", "bench", "");
+    private final BasicProperties properties = new BasicProperties();
+    private final byte[] body = new byte[256];
+    private RabbitChannel channel;
+    private RabbitPublisher publisher;
+
+    @Setup
+    public void setup() {
+        RabbitChannelGroupConfiguration config =
+                new RabbitChannelGroupConfiguration()
+                        .withTransaction(RabbitTransactionType.None);
+        this.channel = new RabbitChannel(
+                new FakeChannel(this.writeCost).create(),
+                null, null, config, null);
+        if (this.mode.equals("ring"))
+            this.publisher = new RabbitPublisher(this.channel, 4096,
+                    Executors.defaultThreadFactory());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void publish1() throws IOException {
+        this.publish();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void publish8() throws IOException {
+        this.publish();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void publish64() throws IOException {
+        this.publish();
+    }
+
+    private void publish() throws IOException {
+        if (this.publisher == null)
+            this.channel.publish(this.address, this.properties, this.body);
+        else
+            this.publisher.publish(
+                    this.address, this.properties, this.body, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (this.publisher == null)
+            return;
+        this.publisher.flush();
+        this.publisher.dispose();
+    }
+}
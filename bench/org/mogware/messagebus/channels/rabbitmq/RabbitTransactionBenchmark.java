@@ -0,0 +1,65 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import org.mogware.system.threading.TimeSpan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitTransactionBenchmark {
+    @Param({"transactions", "confirms"})
+    public String mode;
+
+    @Param({"1", "16"})
+    public int batchSize;
+
+    private final PublicationAddress address =
+            new PublicationAddress("fanout", "bench", "");
+    private final BasicProperties properties = new BasicProperties();
+    private final byte[] body = new byte[256];
+    private RabbitChannel channel;
+
+    @Setup
+    public void setup() {
+        RabbitChannelGroupConfiguration config =
+                new RabbitChannelGroupConfiguration()
+                        .withTransaction(RabbitTransactionType.Full);
+        if (this.mode.equals("confirms"))
+            config.withPublisherConfirms(TimeSpan.fromSeconds(5));
+        this.channel = new RabbitChannel(new FakeChannel().create(),
+                null, null, config, null);
+    }
+
+    @Benchmark
+    public void commit() {
+        RabbitTransaction transaction = this.channel.ensureTransaction();
+        for (int i = 0; i < this.batchSize; i++)
+            transaction.register((tx) -> this.publish());
+        transaction.commit();
+    }
+
+    private void publish() {
+        try {
+            this.channel.publish(this.address, this.properties, this.body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.QueueingConsumer.Delivery;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.mogware.system.threading.TimeSpan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionBenchmark {
+    private static final TimeSpan timeout = TimeSpan.fromSeconds(1);
+
+    @Param({"1", "64"})
+    public int ackBatchSize;
+
+    private Subscription subscription;
+    private Consumer consumer;
+    private BasicProperties properties;
+    private byte[] body;
+    private long deliveryTag;
+
+    @Setup
+    public void setup() {
+        RabbitChannelGroupConfiguration config =
+                new RabbitChannelGroupConfiguration()
+                        .withInputQueue("bench", false)
+                        .withTransaction(RabbitTransactionType.Acknowledge)
+                        .withAcknowledgementBatching(this.ackBatchSize,
+                                TimeSpan.fromMilliseconds(100));
+        FakeChannel broker = new FakeChannel();
+        this.subscription = new Subscription(broker.create(), config);
+        this.consumer = broker.getConsumer();
+        this.properties = new BasicProperties.Builder()
+                .timestamp(new Date())
+                .build();
+        this.body = new byte[256];
+    }
+
+    @Benchmark
+    public Delivery receiveAndAcknowledge() throws Exception {
+        this.consumer.handleDelivery("bench-consumer",
+                new Envelope(++this.deliveryTag, false, "", "bench"),
+                this.properties, this.body);
+        Delivery delivery = this.subscription.BeginReceive(timeout);
+        this.subscription.AcknowledgeMessages();
+        return delivery;
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.subscription.dispose();
+    }
+}
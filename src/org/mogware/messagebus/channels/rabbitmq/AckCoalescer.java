@@ -0,0 +1,155 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class AckCoalescer {
+    private static final ScheduledExecutorService deadlines =
+            Executors.newSingleThreadScheduledExecutor((task) -> {
+                Thread thread = Executors.defaultThreadFactory()
+                        .newThread(task);
+                thread.setName("ack-coalescer-deadlines");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final ConcurrentNavigableMap<Long, Long> inFlight =
+            new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Long, Long> completed =
+            new ConcurrentSkipListMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Channel channel;
+    private final RabbitChannelGroupMetrics metrics;
+    private final int maxMessages;
+    private final long maxDelayNanos;
+
+    private volatile long oldestCompletion;
+    private long acknowledged;
+
+    public AckCoalescer(Channel channel, int maxMessages, long maxDelayNanos) {
+        this(channel, maxMessages, maxDelayNanos, null);
+    }
+
+    public AckCoalescer(Channel channel, int maxMessages, long maxDelayNanos,
+            RabbitChannelGroupMetrics metrics) {
+        if (channel == null)
+            throw new NullPointerException("channel must not be null");
+        if (maxMessages <= 0)
+            throw new IllegalArgumentException("A positive message count " +
+                    "is required.");
+        this.channel = channel;
+        this.metrics = metrics;
+        this.maxMessages = maxMessages;
+        this.maxDelayNanos = Math.max(0, maxDelayNanos);
+    }
+
+    public int getPending() {
+        return this.pending.get();
+    }
+
+    public void received(long deliveryTag) {
+        this.inFlight.put(deliveryTag, System.nanoTime());
+    }
+
+    public void complete(long deliveryTag) {
+        Long received = this.inFlight.remove(deliveryTag);
+        if (received == null)
+            return;
+        this.completed.put(deliveryTag, received);
+        if (this.pending.getAndIncrement() == 0)
+            this.oldestCompletion = System.nanoTime();
+        if (this.pending.get() >= this.maxMessages ||
+                System.nanoTime() - this.oldestCompletion >= this.maxDelayNanos)
+            this.flush();
+        else
+            this.scheduleDeadline(this.maxDelayNanos);
+    }
+
+    private void scheduleDeadline(long delayNanos) {
+        if (this.scheduled.compareAndSet(false, true))
+            deadlines.schedule(this::flushWhenDue, delayNanos,
+                    TimeUnit.NANOSECONDS);
+    }
+
+    private void flushWhenDue() {
+        this.scheduled.set(false);
+        if (this.pending.get() == 0)
+            return;
+        long remaining = this.maxDelayNanos -
+                (System.nanoTime() - this.oldestCompletion);
+        try {
+            if (remaining <= 0)
+                this.flush();
+        } catch (ShutdownSignalException ex) {
+            return;
+        }
+        if (this.pending.get() > 0)
+            this.scheduleDeadline(remaining > 0 ? remaining :
+                    this.maxDelayNanos);
+    }
+
+    public void flush() {
+        if (this.pending.get() == 0)
+            return;
+        this.flushLock.lock();
+        try {
+            long upTo = this.completedBeforeFirstInFlight();
+            if (upTo <= this.acknowledged)
+                return;
+            ConcurrentNavigableMap<Long, Long> batch =
+                    this.completed.headMap(upTo, true);
+            int count = batch.size();
+            this.channel.basicAck(upTo, true);
+            this.acknowledged = upTo;
+            this.record(batch, count);
+            batch.clear();
+            if (this.pending.addAndGet(-count) > 0)
+                this.oldestCompletion = System.nanoTime();
+        } catch (IOException ex) {
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    private void record(ConcurrentNavigableMap<Long, Long> batch, int count) {
+        if (this.metrics == null)
+            return;
+        long now = System.nanoTime();
+        for (Long received: batch.values())
+            this.metrics.acknowledgedAfter(now - received);
+        this.metrics.acknowledged(count);
+    }
+
+    public void abandon() {
+        int count;
+        this.flushLock.lock();
+        try {
+            count = this.inFlight.size() + this.completed.size();
+            this.inFlight.clear();
+            this.completed.clear();
+            this.pending.set(0);
+        } finally {
+            this.flushLock.unlock();
+        }
+        if (this.metrics != null)
+            this.metrics.settled(count);
+    }
+
+    private long completedBeforeFirstInFlight() {
+        Long first = this.inFlight.ceilingKey(Long.MIN_VALUE);
+        Long upTo = first == null ? this.completed.floorKey(Long.MAX_VALUE) :
+                this.completed.lowerKey(first);
+        return upTo == null ? 0 : upTo;
+    }
+}
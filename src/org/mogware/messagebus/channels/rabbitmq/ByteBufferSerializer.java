@@ -0,0 +1,8 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.nio.ByteBuffer;
+
+public interface ByteBufferSerializer {
+    Object deserialize(ByteBuffer body, Class type, String format,
+            String contentEncoding);
+}
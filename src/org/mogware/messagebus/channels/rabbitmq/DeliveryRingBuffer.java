@@ -0,0 +1,103 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.QueueingConsumer.Delivery;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class DeliveryRingBuffer {
+    private static final long fullBackoffNanos =
+            TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AtomicReferenceArray<Delivery> slots;
+    private final long[] stamps;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final int mask;
+
+    private volatile Thread waiter;
+    private volatile boolean closed;
+    private long lastQueueingDelay;
+
+    public DeliveryRingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("A positive capacity is " +
+                    "required.");
+        int size = 1;
+        while (size < capacity && size < (1 << 30))
+            size <<= 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.stamps = new long[size];
+        this.mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return this.slots.length();
+    }
+
+    public int size() {
+        return (int) (this.tail.get() - this.head.get());
+    }
+
+    public boolean getClosed() {
+        return this.closed;
+    }
+
+    public long getLastQueueingDelay() {
+        return this.lastQueueingDelay;
+    }
+
+    public boolean offer(Delivery delivery) {
+        if (delivery == null)
+            throw new NullPointerException("delivery must not be null");
+        long position = this.tail.get();
+        while (position - this.head.get() >= this.slots.length()) {
+            if (this.closed)
+                return false;
+            LockSupport.parkNanos(this, fullBackoffNanos);
+        }
+        this.stamps[(int) position & this.mask] = System.nanoTime();
+        this.slots.lazySet((int) position & this.mask, delivery);
+        this.tail.set(position + 1);
+        Thread current = this.waiter;
+        if (current != null)
+            LockSupport.unpark(current);
+        return true;
+    }
+
+    public Delivery poll(long timeout, TimeUnit unit) {
+        long position = this.head.get();
+        if (position == this.tail.get() && !this.await(position, timeout, unit))
+            return null;
+        int index = (int) position & this.mask;
+        Delivery delivery = this.slots.get(index);
+        this.lastQueueingDelay = System.nanoTime() - this.stamps[index];
+        this.slots.lazySet(index, null);
+        this.head.lazySet(position + 1);
+        return delivery;
+    }
+
+    private boolean await(long position, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.waiter = Thread.currentThread();
+        try {
+            while (position == this.tail.get()) {
+                long remaining = deadline - System.nanoTime();
+                if (this.closed || remaining <= 0 || Thread.interrupted())
+                    return false;
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            this.waiter = null;
+        }
+    }
+
+    public void close() {
+        this.closed = true;
+        Thread current = this.waiter;
+        if (current != null)
+            LockSupport.unpark(current);
+    }
+}
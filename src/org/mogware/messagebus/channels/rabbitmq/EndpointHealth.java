@@ -0,0 +1,99 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EndpointHealth {
+    private static final long baseQuarantine = TimeUnit.SECONDS.toNanos(1);
+    private static final long maxQuarantine = TimeUnit.SECONDS.toNanos(60);
+    private static final long failureMemory = TimeUnit.MINUTES.toNanos(5);
+    private static final long roundTripGranularity =
+            TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int maxLoad = 0xFFFF;
+    private static final AtomicLong choices = new AtomicLong();
+
+    private final URI endpoint;
+    private long roundTripTime;
+    private int consecutiveFailures;
+    private long failures;
+    private long lastFailure;
+    private long quarantinedUntil;
+    private int openConnections;
+    private long lastChosen;
+
+    public EndpointHealth(URI endpoint) {
+        if (endpoint == null)
+            throw new NullPointerException("endpoint must not be null");
+        this.endpoint = endpoint;
+    }
+
+    public URI getEndpoint() {
+        return this.endpoint;
+    }
+
+    public synchronized long getRoundTripTime() {
+        return this.roundTripTime;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return this.consecutiveFailures;
+    }
+
+    public synchronized long getFailures() {
+        return this.failures;
+    }
+
+    public synchronized int getOpenConnections() {
+        return this.openConnections;
+    }
+
+    public synchronized long getLastChosen() {
+        return this.lastChosen;
+    }
+
+    public synchronized boolean isQuarantined() {
+        return this.consecutiveFailures > 0 &&
+                System.nanoTime() - this.quarantinedUntil < 0;
+    }
+
+    public synchronized void chosen() {
+        this.lastChosen = choices.incrementAndGet();
+        this.openConnections++;
+    }
+
+    public synchronized void succeeded(long roundTripNanos) {
+        this.roundTripTime = this.roundTripTime == 0 ? roundTripNanos :
+                this.roundTripTime + ((roundTripNanos - this.roundTripTime) >> 2);
+        this.consecutiveFailures = 0;
+    }
+
+    public synchronized void closed() {
+        if (this.openConnections > 0)
+            this.openConnections--;
+    }
+
+    public synchronized void failed() {
+        long now = System.nanoTime();
+        this.failures++;
+        this.consecutiveFailures++;
+        this.lastFailure = now;
+        this.quarantinedUntil = now + Math.min(maxQuarantine, baseQuarantine <<
+                Math.min(this.consecutiveFailures - 1, 16));
+    }
+
+    public synchronized long getRank(long neutralRoundTripTime) {
+        long now = System.nanoTime();
+        long tier = 0;
+        if (this.consecutiveFailures > 0 && now - this.quarantinedUntil < 0)
+            tier = 2;
+        else if (this.failures > 0 && now - this.lastFailure < failureMemory)
+            tier = 1;
+        long load = Math.min(this.openConnections, maxLoad);
+        long roundTripTime = this.roundTripTime == 0 ?
+                neutralRoundTripTime : this.roundTripTime;
+        long bucket = 64 - Long.numberOfLeadingZeros(
+                roundTripTime / roundTripGranularity);
+        return (tier << 48) | (load << 16) | bucket;
+    }
+}
@@ -0,0 +1,95 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.mogware.system.delegates.Action1;
+
+public class ExpirationWheel<T> {
+    private final Queue<Entry<T>>[] slots;
+    private final AtomicBoolean advancing = new AtomicBoolean();
+    private final long tickMillis;
+    private final int mask;
+    private volatile long nextTick;
+    private volatile long currentTick;
+
+    public ExpirationWheel(long tickMillis, int slotCount, long now) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("A positive tick duration " +
+                    "is required.");
+        if (slotCount <= 0)
+            throw new IllegalArgumentException("A positive slot count " +
+                    "is required.");
+        int size = 1;
+        while (size < slotCount && size < (1 << 30))
+            size <<= 1;
+        @SuppressWarnings("unchecked")
+        Queue<Entry<T>>[] slots = new Queue[size];
+        this.slots = slots;
+        for (int i = 0; i < size; i++)
+            this.slots[i] = new ConcurrentLinkedQueue<>();
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.currentTick = now / tickMillis;
+        this.nextTick = (this.currentTick + 1) * tickMillis;
+    }
+
+    public void schedule(T item, long expiration) {
+        if (item == null)
+            throw new NullPointerException("item must not be null");
+        long tick = Math.max(expiration / this.tickMillis,
+                this.currentTick + 1);
+        this.slots[(int) tick & this.mask].add(new Entry<>(item, expiration));
+    }
+
+    public boolean due(long now) {
+        return now >= this.nextTick;
+    }
+
+    public void advance(long now, Action1<Entry<T>> expired) {
+        if (!this.due(now) || !this.advancing.compareAndSet(false, true))
+            return;
+        try {
+            long target = now / this.tickMillis;
+            long first = Math.max(this.currentTick,
+                    target - this.slots.length + 1);
+            for (long tick = first; tick <= target; tick++)
+                this.expire(this.slots[(int) tick & this.mask], now, expired);
+            this.currentTick = target;
+            this.nextTick = (target + 1) * this.tickMillis;
+        } finally {
+            this.advancing.set(false);
+        }
+    }
+
+    private void expire(Queue<Entry<T>> slot, long now,
+            Action1<Entry<T>> expired) {
+        for (int count = slot.size(); count > 0; count--) {
+            Entry<T> entry = slot.poll();
+            if (entry == null)
+                return;
+            if (entry.getExpiration() <= now)
+                expired.run(entry);
+            else
+                slot.add(entry);
+        }
+    }
+
+    public static final class Entry<T> {
+        private final T item;
+        private final long expiration;
+
+        Entry(T item, long expiration) {
+            this.item = item;
+            this.expiration = expiration;
+        }
+
+        public T getItem() {
+            return this.item;
+        }
+
+        public long getExpiration() {
+            return this.expiration;
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package org.mogware.messagebus.channels.rabbitmq;
 
 import java.net.URI;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
+import java.util.WeakHashMap;
 import org.mogware.system.Guid;
 
 public final class ExtensionMethods {
+    private static final int typeCacheCapacity = 4096;
+    private static final String defaultExchange = "default";
+    private static final TypeCache types = new TypeCache(
+            ExtensionMethods.class.getClassLoader(), typeCacheCapacity);
+    private static final Map<ClassLoader, TypeCache> loaderTypes =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     private ExtensionMethods() {
     }
 
@@ -21,11 +32,27 @@ public final class ExtensionMethods {
     }
 
     public static Class getType(String type) {
-        try {
-            return Class.forName(type);
-        } catch (ClassNotFoundException ex) {
-            return null;
-        }
+        return types.resolve(type);
+    }
+
+    public static Class getType(String type, ClassLoader loader) {
+        if (loader == null || loader == ExtensionMethods.class.getClassLoader())
+            return types.resolve(type);
+        return getTypeCache(loader).resolve(type);
+    }
+
+    public static void registerType(Class type) {
+        if (type == null)
+            throw new NullPointerException("type must not be null");
+        types.register(type);
+        ClassLoader loader = type.getClassLoader();
+        if (loader != null && loader != ExtensionMethods.class.getClassLoader())
+            getTypeCache(loader).register(type);
+    }
+
+    private static TypeCache getTypeCache(ClassLoader loader) {
+        return loaderTypes.computeIfAbsent(loader,
+                (key) -> new TypeCache(key, typeCacheCapacity));
     }
 
     public static PublicationAddress toExchangeAddress(String exchangeName) {
@@ -39,6 +66,19 @@ public final class ExtensionMethods {
         return new PublicationAddress(exchangeType, exchangeName, "");
     }
 
+    public static PublicationAddress toPublicationAddress(URI address) {
+        if (address == null || address.getScheme() == null)
+            return null;
+        String exchangeName = address.getAuthority();
+        if (exchangeName == null || exchangeName.equals(defaultExchange))
+            exchangeName = "";
+        String routingKey = address.getPath();
+        routingKey = routingKey == null || routingKey.isEmpty() ? "" :
+                routingKey.substring(1);
+        return new PublicationAddress(
+                address.getScheme(), exchangeName, routingKey);
+    }
+
     public static Guid toGuid(String value) {
         return Guid.valueOf(value != null ? value : "");
     }
@@ -52,6 +92,10 @@ public final class ExtensionMethods {
     }
 
     public static LocalDateTime toDateTime(String value, LocalDateTime ldt) {
+        if (value == null || value.isEmpty())
+            return LocalDateTime.MAX;
+        if (isDigits(value))
+            return ldt.plus(Long.parseLong(value), ChronoUnit.MILLIS);
         try {
             return LocalDateTime.parse(value);
         } catch (DateTimeParseException ex) {
@@ -59,6 +103,60 @@ public final class ExtensionMethods {
         }
     }
 
+    public static long toExpirationMillis(String value, Date dispatched) {
+        if (value == null || value.isEmpty())
+            return Long.MAX_VALUE;
+        if (isDigits(value))
+            return dispatched == null ? Long.MAX_VALUE :
+                    dispatched.getTime() + Long.parseLong(value);
+        LocalDateTime expiration;
+        try {
+            expiration = LocalDateTime.parse(value);
+        } catch (DateTimeParseException ex) {
+            return toRelativeExpirationMillis(value, dispatched);
+        }
+        if (expiration.isEqual(LocalDateTime.MIN))
+            return Long.MAX_VALUE;
+        try {
+            return expiration.atZone(ZoneId.systemDefault()).toInstant()
+                    .toEpochMilli();
+        } catch (ArithmeticException | DateTimeException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long toRelativeExpirationMillis(String value,
+            Date dispatched) {
+        if (dispatched == null)
+            return Long.MAX_VALUE;
+        try {
+            return dispatched.getTime() + Long.decode(value);
+        } catch (NumberFormatException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    public static String toExpiration(LocalDateTime expiration,
+            Date dispatched) {
+        if (expiration == null || expiration.isEqual(LocalDateTime.MAX) ||
+                expiration.isEqual(LocalDateTime.MIN))
+            return null;
+        long millis = expiration.atZone(ZoneId.systemDefault()).toInstant()
+                .toEpochMilli() - dispatched.getTime();
+        return Long.toString(Math.max(0, millis));
+    }
+
+    private static boolean isDigits(String value) {
+        if (value.length() > 18)
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return true;
+    }
+
     public static String normalizeName(String value) {
         return value == null ? "" : value.toLowerCase().replace('.', '-');
     }
@@ -0,0 +1,65 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    private static final int bucketCount = 64;
+
+    private final LongAdder[] buckets = new LongAdder[bucketCount];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < bucketCount; i++)
+            this.buckets[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.buckets[value == 0 ? 0 :
+                bucketCount - 1 - Long.numberOfLeadingZeros(value)].increment();
+        this.count.increment();
+        this.total.add(value);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public double getMean() {
+        long samples = this.count.sum();
+        return samples == 0 ? 0 : (double) this.total.sum() / samples;
+    }
+
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("The percentile must be " +
+                    "between 0 and 100.");
+        long[] snapshot = this.getBuckets();
+        long samples = 0;
+        for (long bucket: snapshot)
+            samples += bucket;
+        if (samples == 0)
+            return 0;
+        long rank = (long) Math.ceil(samples * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0)
+                return upperBound(i);
+        }
+        return upperBound(snapshot.length - 1);
+    }
+
+    public long[] getBuckets() {
+        long[] snapshot = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++)
+            snapshot[i] = this.buckets[i].sum();
+        return snapshot;
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= bucketCount - 1 ?
+                Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+    }
+}
@@ -0,0 +1,54 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.util.AbstractList;
+import java.util.List;
+import org.mogware.messagebus.PoisonMessageException;
+import org.mogware.system.delegates.Func0;
+
+public class LazyPayload extends AbstractList<Object> {
+    private Func0<List<Object>> deserializer;
+    private volatile List<Object> payload;
+
+    public LazyPayload(Func0<List<Object>> deserializer) {
+        if (deserializer == null)
+            throw new NullPointerException("deserializer must not be null");
+        this.deserializer = deserializer;
+    }
+
+    public boolean getDeserialized() {
+        return this.payload != null;
+    }
+
+    @Override
+    public Object get(int index) {
+        return this.resolve().get(index);
+    }
+
+    @Override
+    public int size() {
+        return this.resolve().size();
+    }
+
+    private List<Object> resolve() {
+        List<Object> current = this.payload;
+        if (current != null)
+            return current;
+        synchronized (this) {
+            if (this.payload == null)
+                this.payload = this.deserialize();
+            return this.payload;
+        }
+    }
+
+    private List<Object> deserialize() {
+        try {
+            List<Object> result = this.deserializer.call();
+            this.deserializer = null;
+            return result;
+        } catch (PoisonMessageException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new PoisonMessageException(ex.getMessage(), ex);
+        }
+    }
+}
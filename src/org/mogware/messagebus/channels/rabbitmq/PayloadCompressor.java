@@ -0,0 +1,158 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class PayloadCompressor {
+    public static final String codec = "deflate";
+    private static final String codecSuffix = ", " + codec;
+    private static final int minimumOutput = 64;
+    public static final int defaultMaxInflatedSize = 64 * 1024 * 1024;
+
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleDeflaters = new AtomicInteger();
+    private final AtomicInteger idleInflaters = new AtomicInteger();
+    private final int level;
+    private final int maxPooled;
+
+    public PayloadCompressor() {
+        this(Deflater.BEST_SPEED,
+                Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public PayloadCompressor(int level, int maxPooled) {
+        if (level != Deflater.DEFAULT_COMPRESSION &&
+                (level < Deflater.NO_COMPRESSION ||
+                        level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("A valid deflate " +
+                    "compression level is required.");
+        if (maxPooled < 0)
+            throw new IllegalArgumentException("A non-negative pool size " +
+                    "is required.");
+        this.level = level;
+        this.maxPooled = maxPooled;
+    }
+
+    public static boolean isCompressed(String contentEncoding) {
+        return contentEncoding != null && (contentEncoding.equals(codec) ||
+                contentEncoding.endsWith(codecSuffix));
+    }
+
+    public static String toCompressedEncoding(String contentEncoding) {
+        return contentEncoding == null || contentEncoding.isEmpty() ?
+                codec : contentEncoding + codecSuffix;
+    }
+
+    public static String toUncompressedEncoding(String contentEncoding) {
+        if (!isCompressed(contentEncoding))
+            return contentEncoding;
+        return contentEncoding.equals(codec) ? "" : contentEncoding.substring(
+                0, contentEncoding.length() - codecSuffix.length());
+    }
+
+    public byte[] compress(byte[] body) {
+        if (body == null)
+            throw new NullPointerException("body must not be null");
+        Deflater deflater = this.leaseDeflater();
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] output = new byte[body.length];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length)
+                    return null;
+                length += deflater.deflate(
+                        output, length, output.length - length);
+            }
+            return length < body.length ?
+                    Arrays.copyOf(output, length) : null;
+        } finally {
+            this.release(deflater);
+        }
+    }
+
+    public byte[] decompress(byte[] body) {
+        return this.decompress(body, defaultMaxInflatedSize);
+    }
+
+    public byte[] decompress(byte[] body, int maxLength) {
+        if (body == null)
+            throw new NullPointerException("body must not be null");
+        if (maxLength <= 0)
+            throw new IllegalArgumentException("A positive maximum size " +
+                    "is required.");
+        Inflater inflater = this.leaseInflater();
+        try {
+            inflater.setInput(body);
+            byte[] output = new byte[(int) Math.min(maxLength,
+                    Math.max(minimumOutput, body.length * 4L))];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == maxLength)
+                    throw new IllegalArgumentException("The compressed " +
+                            "payload inflates beyond " + maxLength +
+                            " bytes.");
+                if (length == output.length)
+                    output = Arrays.copyOf(output, (int) Math.min(maxLength,
+                            output.length * 2L));
+                int inflated = inflater.inflate(
+                        output, length, output.length - length);
+                if (inflated == 0 &&
+                        (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalArgumentException("The compressed " +
+                            "payload is truncated.");
+                length += inflated;
+            }
+            return length == output.length ?
+                    output : Arrays.copyOf(output, length);
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("The compressed payload " +
+                    "is corrupt.", ex);
+        } finally {
+            this.release(inflater);
+        }
+    }
+
+    private Deflater leaseDeflater() {
+        Deflater deflater = this.deflaters.poll();
+        if (deflater == null)
+            return new Deflater(this.level);
+        this.idleDeflaters.decrementAndGet();
+        return deflater;
+    }
+
+    private Inflater leaseInflater() {
+        Inflater inflater = this.inflaters.poll();
+        if (inflater == null)
+            return new Inflater();
+        this.idleInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        if (this.idleDeflaters.incrementAndGet() <= this.maxPooled) {
+            this.deflaters.offer(deflater);
+            return;
+        }
+        this.idleDeflaters.decrementAndGet();
+        deflater.end();
+    }
+
+    private void release(Inflater inflater) {
+        inflater.reset();
+        if (this.idleInflaters.incrementAndGet() <= this.maxPooled) {
+            this.inflaters.offer(inflater);
+            return;
+        }
+        this.idleInflaters.decrementAndGet();
+        inflater.end();
+    }
+}
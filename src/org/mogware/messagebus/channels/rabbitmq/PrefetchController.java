@@ -0,0 +1,106 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class PrefetchController {
+    private static final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+
+    private final Channel channel;
+    private final RabbitChannelGroupMetrics metrics;
+    private final int minPrefetch;
+    private final int maxPrefetch;
+    private final long targetDelay;
+
+    private volatile int prefetch;
+    private volatile long serviceTime;
+    private volatile long deliveryRate;
+    private long windowStart;
+    private long windowHandled;
+    private long windowStarved;
+
+    public PrefetchController(Channel channel, int initial, int minPrefetch,
+            int maxPrefetch, long targetDelayNanos) {
+        this(channel, initial, minPrefetch, maxPrefetch, targetDelayNanos,
+                null);
+    }
+
+    public PrefetchController(Channel channel, int initial, int minPrefetch,
+            int maxPrefetch, long targetDelayNanos,
+            RabbitChannelGroupMetrics metrics) {
+        if (channel == null)
+            throw new NullPointerException("channel must not be null");
+        if (minPrefetch <= 0 || minPrefetch > maxPrefetch)
+            throw new IllegalArgumentException("The maximum prefetch " +
+                    "must be at least the same as the positive minimum.");
+        this.channel = channel;
+        this.metrics = metrics;
+        this.minPrefetch = minPrefetch;
+        this.maxPrefetch = maxPrefetch;
+        this.targetDelay = Math.max(1, targetDelayNanos);
+        this.prefetch = this.clamp(initial);
+        this.windowStart = System.nanoTime();
+    }
+
+    public int getPrefetch() {
+        return this.prefetch;
+    }
+
+    public long getServiceTime() {
+        return this.serviceTime;
+    }
+
+    public long getDeliveryRate() {
+        return this.deliveryRate;
+    }
+
+    public void apply() throws IOException {
+        this.channel.basicQos(0, this.prefetch, true);
+    }
+
+    public void starved() {
+        this.windowStarved++;
+    }
+
+    public void handled(long serviceNanos, long queueingDelay) {
+        this.serviceTime += (serviceNanos - this.serviceTime) >> 3;
+        this.windowHandled++;
+        long now = System.nanoTime();
+        long elapsed = now - this.windowStart;
+        if (elapsed < intervalNanos)
+            return;
+        this.deliveryRate = this.windowHandled * nanosPerSecond / elapsed;
+        this.adjust(queueingDelay);
+        this.windowStart = now;
+        this.windowHandled = 0;
+        this.windowStarved = 0;
+    }
+
+    private void adjust(long queueingDelay) {
+        int current = this.prefetch;
+        long target = this.deliveryRate *
+                (this.serviceTime + this.targetDelay) / nanosPerSecond;
+        int next = current;
+        if (this.windowStarved > 0 && this.windowHandled >= current)
+            next = this.clamp(Math.max(target, (long) current * 2));
+        else if (this.windowStarved == 0 && queueingDelay > this.targetDelay)
+            next = this.clamp(Math.min(current,
+                    Math.max(current / 2, target)));
+        if (next == current)
+            return;
+        try {
+            this.channel.basicQos(0, next, true);
+            this.prefetch = next;
+            if (this.metrics != null)
+                this.metrics.prefetchChanged(next - current);
+        } catch (IOException ex) {
+        }
+    }
+
+    private int clamp(long value) {
+        return (int) Math.max(this.minPrefetch,
+                Math.min(this.maxPrefetch, value));
+    }
+}
@@ -0,0 +1,107 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.ConfirmListener;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class PublisherConfirms implements ConfirmListener {
+    private final ConcurrentNavigableMap<Long, Batch> outstanding =
+            new ConcurrentSkipListMap<>();
+    private final RabbitChannelGroupMetrics metrics;
+
+    public PublisherConfirms() {
+        this(null);
+    }
+
+    public PublisherConfirms(RabbitChannelGroupMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void register(long sequence, Batch batch) {
+        if (batch == null)
+            throw new NullPointerException("batch must not be null");
+        batch.expect();
+        this.outstanding.put(sequence, batch);
+    }
+
+    public int getOutstanding() {
+        return this.outstanding.size();
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        this.resolve(deliveryTag, multiple, true);
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        int count = this.resolve(deliveryTag, multiple, false);
+        if (this.metrics != null)
+            this.metrics.nacked(count);
+    }
+
+    public void abandon() {
+        this.resolve(Long.MAX_VALUE, true, false);
+    }
+
+    private int resolve(long deliveryTag, boolean multiple, boolean ack) {
+        if (!multiple) {
+            Batch batch = this.outstanding.remove(deliveryTag);
+            if (batch == null)
+                return 0;
+            batch.resolve(ack);
+            return 1;
+        }
+        int count = 0;
+        ConcurrentNavigableMap<Long, Batch> confirmed =
+                this.outstanding.headMap(deliveryTag, true);
+        for (Map.Entry<Long, Batch> entry = confirmed.pollFirstEntry();
+                entry != null; entry = confirmed.pollFirstEntry(), count++)
+            entry.getValue().resolve(ack);
+        return count;
+    }
+
+    public static final class Batch {
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean rejected;
+        private volatile Thread waiter;
+
+        void expect() {
+            this.pending.incrementAndGet();
+        }
+
+        void resolve(boolean ack) {
+            if (!ack)
+                this.rejected = true;
+            if (this.pending.decrementAndGet() > 0)
+                return;
+            Thread current = this.waiter;
+            if (current != null)
+                LockSupport.unpark(current);
+        }
+
+        public int getPending() {
+            return this.pending.get();
+        }
+
+        public boolean await(long timeout, TimeUnit unit) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            this.waiter = Thread.currentThread();
+            try {
+                while (this.pending.get() > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || Thread.interrupted())
+                        return false;
+                    LockSupport.parkNanos(this, remaining);
+                }
+                return !this.rejected;
+            } finally {
+                this.waiter = null;
+            }
+        }
+    }
+}
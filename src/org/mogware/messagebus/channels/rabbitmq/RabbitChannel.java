@@ -1,9 +1,14 @@
 package org.mogware.messagebus.channels.rabbitmq;
 
+import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.QueueingConsumer.Delivery;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
 import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.mogware.messagebus.ChannelConnectionException;
 import org.mogware.messagebus.ChannelConnector;
@@ -11,14 +16,16 @@ import org.mogware.messagebus.ChannelEnvelope;
 import org.mogware.messagebus.ChannelGroupConfiguration;
 import org.mogware.messagebus.ChannelMessage;
 import org.mogware.messagebus.ChannelTransaction;
-import org.mogware.messagebus.ConnectionState;
+import org.mogware.messagebus.DeadLetterException;
 import org.mogware.messagebus.DeliveryContext;
 import org.mogware.messagebus.DependencyResolver;
 import org.mogware.messagebus.DispatchContext;
 import org.mogware.messagebus.MessagingChannel;
+import org.mogware.messagebus.PoisonMessageException;
 import org.mogware.system.delegates.Action0;
 import org.mogware.system.delegates.Action1;
 import org.mogware.system.delegates.Func0;
+import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toPublicationAddress;
 
 public class RabbitChannel implements MessagingChannel {
     private static final boolean ContinueReceiving = true;
@@ -32,14 +39,18 @@ public class RabbitChannel implements MessagingChannel {
     private final RabbitChannelGroupConfiguration config;
     private final RabbitTransactionType transactionType;
     private final Func0<RabbitSubscription> subscriptionFactory;
+    private final PublisherConfirms confirms;
+    private final ShutdownListener confirmsListener;
+    private final RabbitChannelPool pool;
     private final int identifier;
 
     private ChannelMessage currentMessage;
     private DependencyResolver currentResolver;
-    private ChannelTransaction currentTransaction;
+    private RabbitTransaction currentTransaction;
     private ChannelGroupConfiguration currentConfig;
 
     private RabbitSubscription subscription;
+    private RabbitPublisher publisher;
     private Delivery delivery;
     private boolean suppressOperations;
     private boolean disposed;
@@ -49,7 +60,17 @@ public class RabbitChannel implements MessagingChannel {
             ChannelConnector connector,
             RabbitChannelGroupConfiguration configuration,
             Func0<RabbitSubscription> subscriptionFactory) {
+        this(channel, connection, connector, configuration,
+                subscriptionFactory, null);
+    }
+
+    public RabbitChannel(Channel channel, Connection connection,
+            ChannelConnector connector,
+            RabbitChannelGroupConfiguration configuration,
+            Func0<RabbitSubscription> subscriptionFactory,
+            RabbitChannelPool pool) {
         this.channel = channel;
+        this.pool = pool;
         this.connection = connection;
         this.connector = connector;
         this.currentConfig = this.config = configuration;
@@ -60,24 +81,34 @@ public class RabbitChannel implements MessagingChannel {
         this.identifier = counter.incrementAndGet();
         this.currentTransaction = new RabbitTransaction(
                 this, this.transactionType);
+        this.confirms = this.transactionType == RabbitTransactionType.Full &&
+                this.config.getPublisherConfirms() ?
+                new PublisherConfirms(this.config.getMetrics()) : null;
+        this.confirmsListener = this.confirms == null ? null :
+                (cause) -> this.confirms.abandon();
         try {
-            if (this.transactionType == RabbitTransactionType.Full)
+            if (this.confirms != null) {
+                this.channel.confirmSelect();
+                this.channel.addConfirmListener(this.confirms);
+                this.channel.addShutdownListener(this.confirmsListener);
+            } else if (this.transactionType == RabbitTransactionType.Full)
                 this.channel.txSelect();
             if (this.config.getChannelBuffer() <= 0 ||
-                    this.config.getDispatchOnly())
+                    this.config.getDispatchOnly() ||
+                    this.config.getAdaptivePrefetch())
                 return;
             if (this.config.getTransactionType() ==
                     RabbitTransactionType.None)
                 return;
             this.channel.basicQos(0, (int)this.config.getChannelBuffer(),
-                    false);
+                    true);
         } catch (IOException ex) {
         }
     }
 
     @Override
     public void beginShutdown() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        this.shutdown = true;
     }
 
     @Override
@@ -90,20 +121,170 @@ public class RabbitChannel implements MessagingChannel {
                     (msg) -> this.receive(msg, callback));
         });
     }
+
     protected boolean receive(Delivery message,
             Action1<DeliveryContext> callback) {
-        return false;
+        if (this.shutdown)
+            return FinishedReceiving;
+        if (message == null)
+            return ContinueReceiving;
+        this.delivery = message;
+        long started = System.nanoTime();
+        try {
+            this.ensureTransaction();
+            this.currentMessage = this.adapter.build(message);
+            callback.run(this);
+            if (this.subscription != null)
+                this.subscription.handled(System.nanoTime() - started);
+        } catch (DeadLetterException ex) {
+            this.config.getMetrics().deadLettered();
+            this.forwardTo(message, this.config.getDeadLetterExchange());
+        } catch (PoisonMessageException ex) {
+            this.config.getMetrics().poisoned();
+            this.forwardTo(message, this.config.getPoisonMessageExchange());
+        } finally {
+            if (this.transactionType == RabbitTransactionType.None)
+                this.config.getMetrics().settled(1);
+            this.currentMessage = null;
+            this.delivery = null;
+        }
+        return this.shutdown ? FinishedReceiving : ContinueReceiving;
+    }
+
+    protected void forwardTo(Delivery message, PublicationAddress address) {
+        if (!this.currentTransaction.getFinished())
+            this.currentTransaction.dispose();
+        RabbitTransaction transaction = this.ensureTransaction();
+        if (address != null)
+            transaction.register((tx) -> this.tryPublish(address,
+                    message.getProperties(), message.getBody()));
+        transaction.commit();
     }
 
     @Override
     public void send(ChannelEnvelope envelope) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (envelope == null)
+            throw new NullPointerException("envelope must not be null");
+        this.throwWhenDisposed();
+        this.ensureTransaction().register((tx) -> this.dispatch(envelope));
+    }
+
+    protected void dispatch(ChannelEnvelope envelope) {
+        Delivery message = this.adapter.build(
+                envelope.getMessage(), new BasicProperties());
+        for (URI recipient: envelope.getRecipients()) {
+            PublicationAddress address = toPublicationAddress(recipient);
+            if (address != null)
+                this.tryPublish(address,
+                        message.getProperties(), message.getBody());
+        }
+    }
+
+    protected void publish(PublicationAddress address,
+            BasicProperties properties, byte[] body) throws IOException {
+        this.publish(address, properties, body, this.confirms == null ?
+                null : this.currentTransaction.getConfirms());
+    }
+
+    protected void publish(PublicationAddress address,
+            BasicProperties properties, byte[] body,
+            PublisherConfirms.Batch batch) throws IOException {
+        if (this.confirms != null && batch != null)
+            this.confirms.register(this.channel.getNextPublishSeqNo(), batch);
+        this.channel.basicPublish(address.getExchangeName(),
+                address.getRoutingKey(), properties, body);
+        this.config.getMetrics().published();
+    }
+
+    private void tryPublish(PublicationAddress address,
+            BasicProperties properties, byte[] body) {
+        try {
+            if (this.config.getPublishBuffer() > 0)
+                this.getPublisher().publish(address, properties, body,
+                        this.confirms == null ? null :
+                                this.currentTransaction.getConfirms());
+            else
+                this.publish(address, properties, body);
+        } catch (IOException ex) {
+            this.shutdownChannel(ex);
+        }
+    }
+
+    private RabbitPublisher getPublisher() {
+        if (this.publisher == null)
+            this.publisher = new RabbitPublisher(this,
+                    this.config.getPublishBuffer(),
+                    this.config.getThreadFactory());
+        return this.publisher;
+    }
+
+    private void awaitPublished() {
+        if (this.publisher == null)
+            return;
+        try {
+            this.publisher.flush();
+        } catch (IOException ex) {
+            this.shutdownChannel(ex);
+        }
+    }
+
+    public long getQueueingDelay() {
+        RabbitSubscription current = this.subscription;
+        return current == null ? 0 : current.getQueueingDelay();
+    }
+
+    public boolean getPublisherConfirms() {
+        return this.confirms != null;
+    }
+
+    public void acknowledgeMessage() {
+        if (this.subscription == null ||
+                this.transactionType == RabbitTransactionType.None)
+            return;
+        this.awaitPublished();
+        this.subscription.acknowledgeMessages();
+    }
+
+    public void commitTransaction(PublisherConfirms.Batch batch) {
+        this.awaitPublished();
+        if (this.confirms != null) {
+            this.awaitConfirms(batch);
+            return;
+        }
+        try {
+            this.channel.txCommit();
+        } catch (IOException ex) {
+            this.shutdownChannel(ex);
+        }
+    }
+
+    public void rollbackTransaction() {
+        if (this.confirms != null)
+            return;
+        try {
+            this.channel.txRollback();
+        } catch (IOException ex) {
+            this.shutdownChannel(ex);
+        }
+    }
+
+    private void awaitConfirms(PublisherConfirms.Batch batch) {
+        if (batch == null)
+            return;
+        long timeout = (long) this.config.getConfirmTimeout()
+                .getTotalMilliseconds();
+        if (batch.await(timeout, TimeUnit.MILLISECONDS))
+            return;
+        throw new ChannelConnectionException(batch.getPending() > 0 ?
+                "Timed out waiting for the broker to confirm " +
+                        batch.getPending() + " published message(s)." :
+                "The broker rejected one or more published messages.");
     }
 
     @Override
     public boolean getActive() {
         return !this.disposed && !this.shutdown &&
-                this.connector.getCurrentState() == ConnectionState.Open &&
+                this.connection.isOpen() &&
                 this.channel.getCloseReason() == null;
     }
 
@@ -134,7 +315,56 @@ public class RabbitChannel implements MessagingChannel {
 
     @Override
     public void dispose() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (this.disposed)
+            return;
+        this.disposed = true;
+        boolean consumed = this.subscription != null;
+        if (consumed)
+            this.subscription.dispose();
+        this.subscription = null;
+        try {
+            if (this.channel.isOpen())
+                this.currentTransaction.dispose();
+        } catch (ChannelConnectionException ex) {
+        }
+        if (this.publisher != null)
+            this.publisher.dispose();
+        this.publisher = null;
+        if (this.confirms != null) {
+            this.channel.removeConfirmListener(this.confirms);
+            this.channel.removeShutdownListener(this.confirmsListener);
+            this.confirms.abandon();
+        }
+        this.releaseChannel(consumed);
+    }
+
+    private void releaseChannel(boolean consumed) {
+        if (this.pool != null && !consumed && !this.suppressOperations) {
+            this.pool.release(this.channel);
+            return;
+        }
+        if (this.pool != null) {
+            this.pool.discard(this.channel);
+            return;
+        }
+        try {
+            if (this.channel.isOpen())
+                this.channel.close();
+        } catch (Exception ex) {
+        }
+    }
+
+    private void throwWhenDisposed() {
+        if (this.disposed)
+            throw new IllegalStateException("The channel has already " +
+                    "been disposed.");
+    }
+
+    protected RabbitTransaction ensureTransaction() {
+        if (this.currentTransaction.getFinished())
+            this.currentTransaction = new RabbitTransaction(
+                    this, this.transactionType);
+        return this.currentTransaction;
     }
 
     protected void tryIt(Action0 callback) {
@@ -149,7 +379,15 @@ public class RabbitChannel implements MessagingChannel {
     private void shutdownChannel(Exception ex) {
         this.suppressOperations = true;
         this.dispose();
-        this.connection.abort(1000);
+        if (!isChannelFailure(ex))
+            this.connection.abort(1000);
         throw new ChannelConnectionException(ex.getMessage(), ex);
     }
+
+    private static boolean isChannelFailure(Exception ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause())
+            if (cause instanceof ShutdownSignalException)
+                return !((ShutdownSignalException) cause).isHardError();
+        return ex instanceof ChannelConnectionException;
+    }
 }
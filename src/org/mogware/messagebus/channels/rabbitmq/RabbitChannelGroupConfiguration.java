@@ -2,12 +2,16 @@ package org.mogware.messagebus.channels.rabbitmq;
 
 import com.rabbitmq.client.AMQP.Queue;
 import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import org.mogware.messagebus.ChannelGroupConfiguration;
 import org.mogware.messagebus.ChannelMessage;
 import org.mogware.messagebus.ChannelMessageBuilder;
@@ -15,6 +19,7 @@ import org.mogware.messagebus.DefaultChannelMessageBuilder;
 import org.mogware.messagebus.DependencyResolver;
 import org.mogware.messagebus.DispatchTable;
 import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.normalizeName;
+import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.registerType;
 import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toExchangeAddress;
 import org.mogware.messagebus.serialization.Serializer;
 import org.mogware.system.threading.TimeSpan;
@@ -33,21 +38,37 @@ public class RabbitChannelGroupConfiguration
     private PublicationAddress unroutableMessageExchange =
             new PublicationAddress("fanout", "unroutable-messages", "");
     private final List<Class> messageTypes = new ArrayList<>();
+    private final RabbitChannelGroupMetrics metrics =
+            new RabbitChannelGroupMetrics(this);
 
     private String groupName;
     private String inputQueue;
     private String applicationId;
     private TimeSpan receiveTimeout;
+    private TimeSpan confirmTimeout;
+    private TimeSpan ackBatchDelay;
+    private TimeSpan maxQueueingDelay;
+    private TimeSpan workerCoolOff;
     private RabbitTransactionType transactionType;
     private RabbitMessageAdapter messageAdapter;
     private ChannelMessageBuilder messageBuilder;
     private DependencyResolver dependencyResolver;
     private DispatchTable dispatchTable;
     private Serializer serializer;
+    private ThreadFactory threadFactory;
+    private ClassLoader classLoader;
     private int minWorkers;
     private int maxWorkers;
     private int maxDispatchBuffer;
     private int maxAttempts;
+    private int ackBatchSize;
+    private int backlogPerWorker;
+    private int publishBuffer;
+    private int compressionThreshold;
+    private int maxInflatedSize;
+    private int minPrefetch;
+    private int maxPrefetch;
+    private int connectionIndex;
 
     private boolean synchronous;
     private boolean dispatchOnly;
@@ -59,6 +80,9 @@ public class RabbitChannelGroupConfiguration
     private boolean autoDelete;
     private boolean purgeOnStartup;
     private boolean returnAddressSpecified;
+    private boolean publisherConfirms;
+    private boolean lazyDeserialization;
+    private boolean adaptivePrefetch;
     private long channelBuffer;
     private URI returnAddress;
 
@@ -66,10 +90,18 @@ public class RabbitChannelGroupConfiguration
         this.groupName = defaultGroupName;
         this.applicationId = defaultAppId;
         this.receiveTimeout = TimeSpan.fromMilliseconds(1500);
+        this.confirmTimeout = TimeSpan.fromSeconds(30);
+        this.ackBatchDelay = TimeSpan.zero;
+        this.ackBatchSize = 1;
+        this.backlogPerWorker = 1024;
+        this.maxQueueingDelay = TimeSpan.fromSeconds(1);
+        this.workerCoolOff = TimeSpan.fromSeconds(60);
         this.minWorkers = this.maxWorkers = 1;
         this.channelBuffer = 1024L;
         this.maxAttempts = 3;
         this.maxDispatchBuffer = Integer.MAX_VALUE;
+        this.maxInflatedSize = PayloadCompressor.defaultMaxInflatedSize;
+        this.connectionIndex = -1;
         this.transactionType = RabbitTransactionType.Full;
 
         this.messageAdapter = new RabbitMessageAdapter(this);
@@ -78,48 +110,60 @@ public class RabbitChannelGroupConfiguration
         this.dispatchOnly = true;
         this.durableQueue = true;
 
+        this.threadFactory = Executors.defaultThreadFactory();
         this.messageBuilder = new DefaultChannelMessageBuilder();
         this.dispatchTable = new RabbitDispatchTable();
     }
 
     public void configureChannel(Channel channel) {
-        if (this.skipDeclarations)
-            return;
-        this.declareSystemExchange(channel, this.poisonMessageExchange);
-        this.declareSystemExchange(channel, this.deadLetterExchange);
-        this.declareSystemExchange(channel, this.unhandledMessageExchange);
-        this.declareSystemExchange(channel, this.unroutableMessageExchange);
-        this.declareExchanges(channel);
-        this.declareQueue(channel);
-        this.bindQueue(channel);
+        TopologyCache.Declarations declarations =
+                TopologyCache.uncached(channel);
+        this.configureChannel(declarations);
+        declarations.synchronize();
     }
 
-    protected void declareSystemExchange(Channel channel,
+    public void configureChannel(TopologyCache.Declarations declarations) {
+        if (this.skipDeclarations)
+            return;
+        this.declareSystemExchange(declarations, this.poisonMessageExchange);
+        this.declareSystemExchange(declarations, this.deadLetterExchange);
+        this.declareSystemExchange(declarations,
+                this.unhandledMessageExchange);
+        this.declareSystemExchange(declarations,
+                this.unroutableMessageExchange);
+        this.declareExchanges(declarations);
+        this.declareQueue(declarations);
+        this.bindQueue(declarations);
+    }
+
+    protected void declareSystemExchange(
+            TopologyCache.Declarations declarations,
             PublicationAddress address) {
         if (this.getDispatchOnly() || address == null)
             return;
         try {
-            channel.exchangeDeclare(address.getExchangeName(),
+            declarations.declareExchange(address.getExchangeName(),
                     address.getExchangeType(), true, false, null);
-            channel.queueDeclare(address.getExchangeName(),
+            declarations.declareQueue(address.getExchangeName(),
                     true, false, false, null);
-            channel.queueBind(address.getExchangeName(),
-                    address.getExchangeName(), null);
+            declarations.bindQueue(address.getExchangeName(),
+                    address.getExchangeName(), "");
         } catch (IOException ex) {
         }
     }
 
-    protected void declareExchanges(Channel channel) {
+    protected void declareExchanges(TopologyCache.Declarations declarations) {
         this.messageTypes.stream().forEach((type) -> {
+            RoutingMetadata routing = RoutingMetadata.of(type);
             try {
-                channel.exchangeDeclare(normalizeName(type.getName()),
-                        "fanout", true, false, null);
+                declarations.declareExchange(routing.getExchangeName(),
+                        routing.getExchangeType(), true, false, null);
             } catch (IOException ex) {
             }
         });
     }
 
-    protected void declareQueue(Channel channel) {
+    protected void declareQueue(TopologyCache.Declarations declarations) {
         if (this.getDispatchOnly())
             return;
         Map<String, Object> declarationArgs = new HashMap<>();
@@ -131,37 +175,44 @@ public class RabbitChannelGroupConfiguration
         String inputQueue = this.inputQueue;
         if (randomInputQueue)
             inputQueue = "";
+        Channel channel = declarations.getChannel();
         try {
-            Queue.DeclareOk declaration = channel.queueDeclare(inputQueue,
-                    this.durableQueue, this.exclusiveQueue,
-                    this.autoDelete, declarationArgs);
-            if (declaration != null)
-                this.inputQueue = declaration.getQueue();
+            if (inputQueue.isEmpty() || !declarations.isDeclared(inputQueue)) {
+                Queue.DeclareOk declaration = declarations.declareQueueAndWait(
+                        inputQueue, this.durableQueue, this.exclusiveQueue,
+                        this.autoDelete, declarationArgs);
+                if (declaration != null)
+                    this.inputQueue = declaration.getQueue();
+            }
             if (!this.returnAddressSpecified)
                 this.returnAddress = URI.create("direct://default/" +
                         this.inputQueue);
             if (this.purgeOnStartup)
                 channel.queuePurge(this.inputQueue);
-            channel.basicQos(0, (int) this.channelBuffer, false);
-        } catch (IOException ex) {
+            if (!this.adaptivePrefetch)
+                channel.basicQos(0, (int) this.channelBuffer, false);
+        } catch (IOException | ShutdownSignalException ex) {
         }
     }
 
-    protected void bindQueue(Channel channel) {
+    protected void bindQueue(TopologyCache.Declarations declarations) {
         if (this.getDispatchOnly())
             return;
         this.messageTypes.stream().forEach((type) -> {
             try {
-                channel.queueBind(this.inputQueue,
-                    normalizeName(type.getName()), "", null);
+                declarations.bindQueue(this.inputQueue,
+                    RoutingMetadata.of(type).getExchangeName(), "");
             } catch (IOException ex) {
             }
         });
     }
 
     public String lookupRoutingKey(ChannelMessage message) {
-        return normalizeName(
-                message.getMessages().get(0).getClass().getName());
+        return this.lookupRoutingKey(message.getMessages().get(0).getClass());
+    }
+
+    public String lookupRoutingKey(Class type) {
+        return RoutingMetadata.of(type).getRoutingKey();
     }
 
     public String getInputQueue() {
@@ -172,6 +223,90 @@ public class RabbitChannelGroupConfiguration
         return this.transactionType;
     }
 
+    public PublicationAddress getPoisonMessageExchange() {
+        return this.poisonMessageExchange;
+    }
+
+    public PublicationAddress getDeadLetterExchange() {
+        return this.deadLetterExchange;
+    }
+
+    public boolean getPublisherConfirms() {
+        return this.publisherConfirms;
+    }
+
+    public TimeSpan getConfirmTimeout() {
+        return this.confirmTimeout;
+    }
+
+    public int getAckBatchSize() {
+        return this.ackBatchSize;
+    }
+
+    public TimeSpan getAckBatchDelay() {
+        return this.ackBatchDelay;
+    }
+
+    public int getBacklogPerWorker() {
+        return this.backlogPerWorker;
+    }
+
+    public TimeSpan getMaxQueueingDelay() {
+        return this.maxQueueingDelay;
+    }
+
+    public TimeSpan getWorkerCoolOff() {
+        return this.workerCoolOff;
+    }
+
+    public ThreadFactory getThreadFactory() {
+        return this.threadFactory;
+    }
+
+    public ClassLoader getClassLoader() {
+        return this.classLoader;
+    }
+
+    public int getPublishBuffer() {
+        return this.publishBuffer;
+    }
+
+    public int getCompressionThreshold() {
+        return this.compressionThreshold;
+    }
+
+    public int getMaxInflatedSize() {
+        return this.maxInflatedSize;
+    }
+
+    public RabbitChannelGroupMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public boolean getAdaptivePrefetch() {
+        return this.adaptivePrefetch;
+    }
+
+    public int getMinPrefetch() {
+        return this.minPrefetch;
+    }
+
+    public int getMaxPrefetch() {
+        return this.maxPrefetch;
+    }
+
+    public int getConnectionIndex() {
+        return this.connectionIndex;
+    }
+
+    public boolean getExclusiveReceive() {
+        return this.exclusiveQueue;
+    }
+
+    public boolean getLazyDeserialization() {
+        return this.lazyDeserialization;
+    }
+
     public RabbitMessageAdapter getMessageAdapter() {
         return this.messageAdapter;
     }
@@ -269,6 +404,51 @@ public class RabbitChannelGroupConfiguration
         return this;
     }
 
+    public RabbitChannelGroupConfiguration withWorkerScaling(
+            int backlogPerWorker, TimeSpan maxQueueingDelay,
+            TimeSpan coolOff) {
+        if (backlogPerWorker <= 0)
+            throw new IllegalArgumentException("A positive backlog per " +
+                    "worker is required.");
+        if (maxQueueingDelay.compareTo(TimeSpan.zero) < 0)
+            throw new IllegalArgumentException("Delay must be positive");
+        if (coolOff.compareTo(TimeSpan.zero) < 0)
+            throw new IllegalArgumentException("Cool-off must be positive");
+        this.backlogPerWorker = backlogPerWorker;
+        this.maxQueueingDelay = maxQueueingDelay;
+        this.workerCoolOff = coolOff;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withThreadFactory(
+            ThreadFactory factory) {
+        if (factory == null)
+            throw new NullPointerException("factory must not be null");
+        this.threadFactory = factory;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withClassLoader(
+            ClassLoader loader) {
+        if (loader == null)
+            throw new NullPointerException("loader must not be null");
+        this.classLoader = loader;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withVirtualThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory");
+            return this.withThreadFactory(
+                    (ThreadFactory) factory.invoke(builder));
+        } catch (ReflectiveOperationException ex) {
+            throw new UnsupportedOperationException("Virtual threads " +
+                    "require a Java 21 or later runtime.", ex);
+        }
+    }
+
     public RabbitChannelGroupConfiguration withInputQueue(String name,
             boolean clustered) {
         if (name == null)
@@ -321,6 +501,28 @@ public class RabbitChannelGroupConfiguration
         return this;
     }
 
+    public RabbitChannelGroupConfiguration withLazyDeserialization() {
+        this.lazyDeserialization = true;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withCompression(int minimumSize) {
+        if (minimumSize <= 0)
+            throw new IllegalArgumentException("A positive payload size " +
+                    "is required.");
+        this.compressionThreshold = minimumSize;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withMaxInflatedSize(
+            int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("A positive payload size " +
+                    "is required.");
+        this.maxInflatedSize = maximumSize;
+        return this;
+    }
+
     public RabbitChannelGroupConfiguration withDispatchOnly() {
         this.dispatchOnly = true;
         this.inputQueue = null;
@@ -342,6 +544,36 @@ public class RabbitChannelGroupConfiguration
         return this;
     }
 
+    public RabbitChannelGroupConfiguration withPublisherConfirms(
+            TimeSpan timeout) {
+        if (timeout.compareTo(TimeSpan.zero) < 0)
+            throw new IllegalArgumentException("Timeout must be positive");
+        this.publisherConfirms = true;
+        this.confirmTimeout = timeout;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withAsyncPublishing(
+            int bufferSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("A positive buffer size " +
+                    "is required.");
+        this.publishBuffer = bufferSize;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withAcknowledgementBatching(
+            int maxMessages, TimeSpan maxDelay) {
+        if (maxMessages <= 0)
+            throw new IllegalArgumentException("A positive message count " +
+                    "is required.");
+        if (maxDelay.compareTo(TimeSpan.zero) < 0)
+            throw new IllegalArgumentException("Delay must be positive");
+        this.ackBatchSize = maxMessages;
+        this.ackBatchDelay = maxDelay;
+        return this;
+    }
+
     public RabbitChannelGroupConfiguration withChannelBuffer(
             long maxMessageBuffer) {
         if (maxMessageBuffer < 0)
@@ -353,6 +585,28 @@ public class RabbitChannelGroupConfiguration
         return this;
     }
 
+    public RabbitChannelGroupConfiguration withAdaptivePrefetch(
+            int minPrefetch, int maxPrefetch) {
+        if (minPrefetch <= 0)
+            throw new IllegalArgumentException("A positive minimum " +
+                    "prefetch is required.");
+        if (maxPrefetch < minPrefetch)
+            throw new IllegalArgumentException("The maximum prefetch " +
+                    "must be at least the same as the minimum specified.");
+        this.adaptivePrefetch = true;
+        this.minPrefetch = minPrefetch;
+        this.maxPrefetch = maxPrefetch;
+        return this;
+    }
+
+    public RabbitChannelGroupConfiguration withConnectionIndex(int index) {
+        if (index < 0)
+            throw new IllegalArgumentException("A non-negative connection " +
+                    "index is required.");
+        this.connectionIndex = index;
+        return this;
+    }
+
     public RabbitChannelGroupConfiguration withChannelMessageBuilder(
             ChannelMessageBuilder builder) {
         if (builder == null)
@@ -429,8 +683,10 @@ public class RabbitChannelGroupConfiguration
             Iterable<Class> handledTypes) {
         if (handledTypes == null)
             throw new NullPointerException("handledTypes must not be null");
-        for (Class type: handledTypes)
+        for (Class type: handledTypes) {
             this.messageTypes.add(type);
+            registerType(type);
+        }
         return this;
     }
 
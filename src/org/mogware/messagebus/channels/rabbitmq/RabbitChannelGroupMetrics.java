@@ -0,0 +1,152 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class RabbitChannelGroupMetrics
+        implements RabbitChannelGroupMetricsMBean {
+    private final LongAdder received = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder poisoned = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder prefetch = new LongAdder();
+    private final LatencyHistogram deserializationTime =
+            new LatencyHistogram();
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+    private final RabbitChannelGroupConfiguration config;
+
+    public RabbitChannelGroupMetrics(RabbitChannelGroupConfiguration config) {
+        if (config == null)
+            throw new NullPointerException("config must not be null");
+        this.config = config;
+    }
+
+    public void received() {
+        this.received.increment();
+        this.inFlight.increment();
+    }
+
+    public void published() {
+        this.published.increment();
+    }
+
+    public void acknowledged(int count) {
+        this.acknowledged.add(count);
+        this.inFlight.add(-count);
+    }
+
+    public void settled(int count) {
+        this.inFlight.add(-count);
+    }
+
+    public void nacked(int count) {
+        this.nacked.add(count);
+    }
+
+    public void deadLettered() {
+        this.deadLettered.increment();
+    }
+
+    public void poisoned() {
+        this.poisoned.increment();
+    }
+
+    public void prefetchChanged(int delta) {
+        this.prefetch.add(delta);
+    }
+
+    public void deserialized(long nanos) {
+        this.deserializationTime.record(nanos);
+    }
+
+    public void acknowledgedAfter(long nanos) {
+        this.ackLatency.record(nanos);
+    }
+
+    @Override
+    public String getGroupName() {
+        return this.config.getGroupName();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return this.received.sum();
+    }
+
+    @Override
+    public long getMessagesPublished() {
+        return this.published.sum();
+    }
+
+    @Override
+    public long getMessagesAcknowledged() {
+        return this.acknowledged.sum();
+    }
+
+    @Override
+    public long getMessagesNacked() {
+        return this.nacked.sum();
+    }
+
+    @Override
+    public long getMessagesDeadLettered() {
+        return this.deadLettered.sum();
+    }
+
+    @Override
+    public long getMessagesPoisoned() {
+        return this.poisoned.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return this.inFlight.sum();
+    }
+
+    @Override
+    public long getPrefetch() {
+        return this.prefetch.sum();
+    }
+
+    @Override
+    public double getDeserializationTimeMeanNanos() {
+        return this.deserializationTime.getMean();
+    }
+
+    @Override
+    public long getDeserializationTimeP50Nanos() {
+        return this.deserializationTime.getPercentile(50);
+    }
+
+    @Override
+    public long getDeserializationTimeP99Nanos() {
+        return this.deserializationTime.getPercentile(99);
+    }
+
+    @Override
+    public long[] getDeserializationTimeHistogram() {
+        return this.deserializationTime.getBuckets();
+    }
+
+    @Override
+    public double getAckLatencyMeanNanos() {
+        return this.ackLatency.getMean();
+    }
+
+    @Override
+    public long getAckLatencyP50Nanos() {
+        return this.ackLatency.getPercentile(50);
+    }
+
+    @Override
+    public long getAckLatencyP99Nanos() {
+        return this.ackLatency.getPercentile(99);
+    }
+
+    @Override
+    public long[] getAckLatencyHistogram() {
+        return this.ackLatency.getBuckets();
+    }
+}
@@ -0,0 +1,21 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+public interface RabbitChannelGroupMetricsMBean {
+    String getGroupName();
+    long getMessagesReceived();
+    long getMessagesPublished();
+    long getMessagesAcknowledged();
+    long getMessagesNacked();
+    long getMessagesDeadLettered();
+    long getMessagesPoisoned();
+    long getInFlight();
+    long getPrefetch();
+    double getDeserializationTimeMeanNanos();
+    long getDeserializationTimeP50Nanos();
+    long getDeserializationTimeP99Nanos();
+    long[] getDeserializationTimeHistogram();
+    double getAckLatencyMeanNanos();
+    long getAckLatencyP50Nanos();
+    long getAckLatencyP99Nanos();
+    long[] getAckLatencyHistogram();
+}
@@ -0,0 +1,53 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.mogware.messagebus.ChannelMessage;
+import org.mogware.system.Guid;
+import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toDateTime;
+
+final class RabbitChannelMessage extends ChannelMessage {
+    private final Date dispatchedAt;
+    private final long expiresAt;
+    private boolean dispatchedResolved;
+    private boolean expirationResolved;
+
+    RabbitChannelMessage(Guid messageId, Guid correlationId,
+            URI returnAddress, Map<String, String> headers,
+            List<Object> messages, Date dispatchedAt, long expiresAt) {
+        super(messageId, correlationId, returnAddress, headers, messages);
+        this.dispatchedAt = dispatchedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public LocalDateTime getDispatched() {
+        if (!this.dispatchedResolved)
+            this.setDispatched(this.dispatchedAt == null ? null :
+                    toDateTime(this.dispatchedAt));
+        return super.getDispatched();
+    }
+
+    @Override
+    public void setDispatched(LocalDateTime value) {
+        this.dispatchedResolved = true;
+        super.setDispatched(value);
+    }
+
+    @Override
+    public LocalDateTime getExpiration() {
+        if (!this.expirationResolved)
+            this.setExpiration(this.expiresAt == Long.MAX_VALUE ?
+                    LocalDateTime.MAX : toDateTime(new Date(this.expiresAt)));
+        return super.getExpiration();
+    }
+
+    @Override
+    public void setExpiration(LocalDateTime value) {
+        this.expirationResolved = true;
+        super.setExpiration(value);
+    }
+}
@@ -0,0 +1,147 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.mogware.messagebus.ChannelConnectionException;
+import org.mogware.system.Disposable;
+
+public class RabbitChannelPool implements Disposable {
+    private static final long leaseTimeoutMillis = 30000;
+
+    private final ConcurrentLinkedDeque<Channel> idle =
+            new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger leasedCount = new AtomicInteger();
+    private final Semaphore leases;
+    private final Connection connection;
+    private final int minChannels;
+    private final int maxChannels;
+    private volatile boolean disposed;
+
+    public RabbitChannelPool(Connection connection, int minChannels,
+            int maxChannels) {
+        if (connection == null)
+            throw new NullPointerException("connection must not be null");
+        if (minChannels < 0 || minChannels > maxChannels)
+            throw new IllegalArgumentException("The maximum channels " +
+                    "must be at least the same as the minimum specified.");
+        if (maxChannels <= 0)
+            throw new IllegalArgumentException("At least one channel " +
+                    "must be allowed.");
+        this.connection = connection;
+        this.minChannels = minChannels;
+        this.maxChannels = maxChannels;
+        this.leases = new Semaphore(maxChannels);
+    }
+
+    public Connection getConnection() {
+        return this.connection;
+    }
+
+    public int getIdleCount() {
+        return this.idleCount.get();
+    }
+
+    public int getLeasedCount() {
+        return this.leasedCount.get();
+    }
+
+    public int getMaxChannels() {
+        return this.maxChannels;
+    }
+
+    public void prewarm() throws IOException {
+        while (!this.disposed && this.idleCount.get() < this.minChannels)
+            this.offer(this.createChannel());
+    }
+
+    public Channel lease() throws IOException {
+        this.acquire();
+        this.leasedCount.incrementAndGet();
+        try {
+            for (Channel channel = this.idle.pollFirst(); channel != null;
+                    channel = this.idle.pollFirst()) {
+                this.idleCount.decrementAndGet();
+                if (channel.getCloseReason() == null)
+                    return channel;
+            }
+            return this.createChannel();
+        } catch (IOException | RuntimeException ex) {
+            this.leasedCount.decrementAndGet();
+            this.leases.release();
+            throw ex;
+        }
+    }
+
+    public void release(Channel channel) {
+        if (channel == null)
+            return;
+        this.leasedCount.decrementAndGet();
+        this.leases.release();
+        this.offer(channel);
+    }
+
+    public void discard(Channel channel) {
+        if (channel == null)
+            return;
+        this.leasedCount.decrementAndGet();
+        this.leases.release();
+        tryClose(channel);
+    }
+
+    private void acquire() {
+        try {
+            if (this.leases.tryAcquire(leaseTimeoutMillis,
+                    TimeUnit.MILLISECONDS))
+                return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        throw new ChannelConnectionException("All " + this.maxChannels +
+                " channels of the pool are leased.");
+    }
+
+    private Channel createChannel() throws IOException {
+        Channel channel = this.connection.createChannel();
+        if (channel == null)
+            throw new ChannelConnectionException("The broker refused to " +
+                    "open another channel on the connection.");
+        return channel;
+    }
+
+    private void offer(Channel channel) {
+        if (channel.getCloseReason() != null)
+            return;
+        if (!this.disposed) {
+            if (this.idleCount.incrementAndGet() <= this.maxChannels) {
+                this.idle.offerFirst(channel);
+                return;
+            }
+            this.idleCount.decrementAndGet();
+        }
+        tryClose(channel);
+    }
+
+    @Override
+    public void dispose() {
+        this.disposed = true;
+        for (Channel channel = this.idle.pollFirst(); channel != null;
+                channel = this.idle.pollFirst()) {
+            this.idleCount.decrementAndGet();
+            tryClose(channel);
+        }
+    }
+
+    private static void tryClose(Channel channel) {
+        try {
+            if (channel.isOpen())
+                channel.close();
+        } catch (Exception ex) {
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+public enum RabbitConnectionSharding {
+    Group,
+    Load
+}
@@ -4,8 +4,25 @@ import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.mogware.messagebus.ChannelConnectionException;
@@ -16,37 +33,191 @@ import org.mogware.messagebus.MessagingChannel;
 import org.mogware.system.threading.TimeSpan;
 
 public class RabbitConnector implements ChannelConnector {
+    private static final TimeSpan defaultRecoveryDelay =
+            TimeSpan.fromMilliseconds(100);
+    private static final TimeSpan defaultMaxRecoveryDelay =
+            TimeSpan.fromSeconds(30);
+
     private final Map<String, RabbitChannelGroupConfiguration> configuration;
+    private final Map<String, RabbitChannelPool> pools =
+            new ConcurrentHashMap<>();
     private final ConnectionFactory factory;
     private final int shutdownTimeout;
-    private ConnectionState currentState;
-    private Connection connection;
-    private boolean disposed;
-    
+    private final AtomicReferenceArray<ConnectionState> states;
+    private final AtomicReferenceArray<CompletableFuture<Connection>>
+            connections;
+    private final AtomicIntegerArray opened;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final Map<String, Integer> assignments;
+    private final int connectionCount;
+    private final RabbitConnectionSharding sharding;
+    private final RabbitConnectorMetrics metrics;
+    private final TopologyCache topology = new TopologyCache();
+    private final long recoveryDelay;
+    private final long maxRecoveryDelay;
+    private ScheduledExecutorService recovery;
+    private volatile CompletableFuture<Boolean> recovering;
+    private final Set<Integer> lost = ConcurrentHashMap.newKeySet();
+    private long disconnectedAt;
+    private int recoveryAttempts;
+    private volatile boolean disposed;
+
+    public RabbitConnector(ConnectionFactory factory, TimeSpan shutdownTimeout,
+            Iterable<RabbitChannelGroupConfiguration> config) {
+        this(factory, shutdownTimeout, defaultRecoveryDelay,
+                defaultMaxRecoveryDelay, config);
+    }
 
     public RabbitConnector(ConnectionFactory factory, TimeSpan shutdownTimeout,
+            TimeSpan recoveryDelay, TimeSpan maxRecoveryDelay,
+            Iterable<RabbitChannelGroupConfiguration> config) {
+        this(factory, shutdownTimeout, recoveryDelay, maxRecoveryDelay, 1,
+                RabbitConnectionSharding.Group, config);
+    }
+
+    public RabbitConnector(ConnectionFactory factory, TimeSpan shutdownTimeout,
+            TimeSpan recoveryDelay, TimeSpan maxRecoveryDelay,
+            int connectionCount, RabbitConnectionSharding sharding,
             Iterable<RabbitChannelGroupConfiguration> config) {
         if (factory == null)
             throw new NullPointerException("factory must not be null"); 
         if (config == null)
             throw new NullPointerException("configuration must not be null");            
+        if (sharding == null)
+            throw new NullPointerException("sharding must not be null");
+        if (connectionCount <= 0)
+            throw new IllegalArgumentException("At least one connection " +
+                    "is required.");
         this.factory = factory;
+        this.connectionCount = connectionCount;
+        this.sharding = sharding;
+        this.connections = new AtomicReferenceArray<>(connectionCount);
+        this.opened = new AtomicIntegerArray(connectionCount);
+        this.states = new AtomicReferenceArray<>(connectionCount);
+        for (int i = 0; i < connectionCount; i++)
+            this.states.set(i, ConnectionState.Closed);
         this.shutdownTimeout = (int) shutdownTimeout.getTotalMilliseconds();
+        this.recoveryDelay = recoveryDelay == null ||
+                maxRecoveryDelay == null ? 0 : TimeUnit.MILLISECONDS.toNanos(
+                        Math.max(1, (long) recoveryDelay.getTotalMilliseconds()));
+        this.maxRecoveryDelay = this.recoveryDelay == 0 ? 0 :
+                Math.max(this.recoveryDelay, TimeUnit.MILLISECONDS.toNanos(
+                        (long) maxRecoveryDelay.getTotalMilliseconds()));
         this.configuration = StreamSupport.stream(config.spliterator(), false)
                 .filter((x) -> x != null)
                 .filter((x) -> !x.getGroupName().isEmpty())
                 .collect(Collectors.toMap(x -> x.getGroupName(), x -> x));
         if (this.configuration.isEmpty())
             throw new IllegalArgumentException("No configurations provided.");
+        this.assignments = this.assignConnections();
+        this.metrics = new RabbitConnectorMetrics(this);
+        this.metrics.register();
+    }
+
+    public RabbitConnectorMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public TopologyCache getTopologyCache() {
+        return this.topology;
+    }
+
+    public int getConnectionCount() {
+        return this.connectionCount;
+    }
+
+    public RabbitConnectionSharding getSharding() {
+        return this.sharding;
+    }
+
+    public int getConnectionIndex(String channelGroup) {
+        return this.assignments.get(
+                this.getChannelGroupConfiguration(channelGroup).getGroupName());
+    }
+
+    public int getOpenConnectionCount() {
+        int open = 0;
+        for (int i = 0; i < this.connectionCount; i++) {
+            CompletableFuture<Connection> attempt = this.connections.get(i);
+            Connection current = attempt == null ||
+                    attempt.isCompletedExceptionally() ? null :
+                    attempt.getNow(null);
+            if (current != null && current.isOpen())
+                open++;
+        }
+        return open;
+    }
+
+    public boolean getAutomaticRecovery() {
+        return this.recoveryDelay > 0;
+    }
+
+    public boolean isRecovering() {
+        return this.recovering != null;
+    }
+
+    public boolean awaitRecovery(TimeSpan timeout) {
+        CompletableFuture<Boolean> current = this.recovering;
+        if (current == null)
+            return false;
+        try {
+            return current.get((long) timeout.getTotalMilliseconds(),
+                    TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException ex) {
+            return false;
+        }
+    }
+
+    public long getIdleChannelCount() {
+        long idle = 0;
+        for (RabbitChannelPool pool: this.pools.values())
+            idle += pool.getIdleCount();
+        return idle;
+    }
+
+    public long getLeasedChannelCount() {
+        long leased = 0;
+        for (RabbitChannelPool pool: this.pools.values())
+            leased += pool.getLeasedCount();
+        return leased;
     }
 
     @Override
     public ConnectionState getCurrentState() {
-        return this.currentState;
+        ConnectionState current = ConnectionState.Closed;
+        for (int i = 0; i < this.connectionCount; i++) {
+            ConnectionState state = this.states.get(i);
+            if (severity(state) > severity(current))
+                current = state;
+        }
+        return current;
+    }
+
+    public ConnectionState getCurrentState(int index) {
+        return this.states.get(index);
     }
 
     public void setCurrentState(ConnectionState connectionState) {
-        this.currentState = connectionState;
+        for (int i = 0; i < this.connectionCount; i++)
+            this.states.set(i, connectionState);
+    }
+
+    private static int severity(ConnectionState state) {
+        switch (state) {
+            case Disconnected:
+                return 4;
+            case Closing:
+                return 3;
+            case Opening:
+                return 2;
+            case Open:
+                return 1;
+            default:
+                return 0;
+        }
     }
     
     @Override
@@ -60,71 +231,352 @@ public class RabbitConnector implements ChannelConnector {
     public MessagingChannel connect(String channelGroup) {
         RabbitChannelGroupConfiguration config =
                 this.getChannelGroupConfiguration(channelGroup);
-        synchronized (this) {
-            return this.establishChannel(config);
+        int index = this.assignments.get(config.getGroupName());
+        Connection connection = this.establishConnection(index);
+        if (this.isShared(config)) {
+            index = this.selectConnection();
+            connection = this.establishConnection(index);
+        }
+        return this.establishChannel(index, connection, config);
+    }
+
+    private Map<String, Integer> assignConnections() {
+        List<RabbitChannelGroupConfiguration> groups =
+                new ArrayList<>(this.configuration.values());
+        groups.sort(Comparator.comparing((x) -> x.getGroupName()));
+        boolean isolate = this.connectionCount > 1 &&
+                groups.stream().anyMatch((x) -> x.getDispatchOnly()) &&
+                groups.stream().anyMatch((x) -> !x.getDispatchOnly());
+        int split = isolate ? Math.max(1, this.connectionCount / 2) : 0;
+        int publishers = 0;
+        int consumers = 0;
+        Map<String, Integer> assigned = new HashMap<>();
+        for (RabbitChannelGroupConfiguration cfg: groups) {
+            int index;
+            if (cfg.getConnectionIndex() >= 0)
+                index = cfg.getConnectionIndex() % this.connectionCount;
+            else if (!isolate)
+                index = publishers++ % this.connectionCount;
+            else if (cfg.getDispatchOnly())
+                index = publishers++ % split;
+            else
+                index = split + consumers++ % (this.connectionCount - split);
+            assigned.put(cfg.getGroupName(), index);
+        }
+        return assigned;
+    }
+
+    private boolean isShared(RabbitChannelGroupConfiguration config) {
+        return this.sharding == RabbitConnectionSharding.Load &&
+                this.connectionCount > 1 && config.getConnectionIndex() < 0 &&
+                !config.getExclusiveReceive();
+    }
+
+    protected int selectConnection() {
+        int start = this.nextConnection.getAndIncrement();
+        int selected = 0;
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < this.connectionCount; i++) {
+            int index = Math.floorMod(start + i, this.connectionCount);
+            long leased = 0;
+            for (String group: this.configuration.keySet()) {
+                RabbitChannelPool pool = this.pools.get(poolKey(group, index));
+                if (pool != null)
+                    leased += pool.getLeasedCount();
+            }
+            if (leased < least) {
+                least = leased;
+                selected = index;
+            }
         }
+        return selected;
+    }
+
+    private static String poolKey(String group, int index) {
+        return group + "#" + index;
     }
 
     protected RabbitChannelGroupConfiguration getChannelGroupConfiguration(
             String channelGroup) {
-        return null;
-    }   
-    
-    protected MessagingChannel establishChannel(
-            RabbitChannelGroupConfiguration config) {    
+        if (channelGroup == null)
+            throw new NullPointerException("channelGroup must not be null");
+        RabbitChannelGroupConfiguration config =
+                this.configuration.get(channelGroup);
+        if (config == null)
+            throw new IllegalArgumentException("Could not find a channel " +
+                    "group named '" + channelGroup + "'.");
+        return config;
+    }
+
+    protected MessagingChannel establishChannel(int index,
+            Connection connection, RabbitChannelGroupConfiguration config) {
+        RabbitChannelPool pool = this.pools.get(
+                poolKey(config.getGroupName(), index));
+        if (pool == null || pool.getConnection() != connection)
+            throw new ChannelConnectionException("The connection to the " +
+                    "broker has been closed.");
+        Channel channel = null;
+        try {
+            channel = pool.lease();
+            final Channel leased = channel;
+            return new RabbitChannel(channel, connection, this, config,
+                    () -> new RabbitSubscription(
+                            new Subscription(leased, config)), pool);
+        } catch (IOException ex) {
+            this.close(index, channel, ConnectionState.Disconnected, ex);
+        }
         return null;
     }
-    
-    protected Channel establishChannel() {
+
+    public long getMessageCount(String channelGroup) {
+        RabbitChannelGroupConfiguration config =
+                this.getChannelGroupConfiguration(channelGroup);
+        if (config.getDispatchOnly())
+            return 0;
+        int index = this.assignments.get(config.getGroupName());
+        Connection current = this.establishConnection(index);
         Channel channel = null;
         try {
-            if (this.connection != null)
-                return this.connection.createChannel();
-            this.currentState = ConnectionState.Opening;            
-            this.connection = this.factory.newConnection();
-            final RabbitConnector self = this;
-            this.connection.addShutdownListener((cause) -> {
-                self.close(null, ConnectionState.Closed, cause);
-            });
-            this.currentState = ConnectionState.Open;
-            channel = this.connection.createChannel();
-            this.initializeConfigurations(channel);
+            channel = current.createChannel();
+            if (channel == null)
+                throw new ChannelConnectionException("The broker refused " +
+                        "to open another channel on the connection.");
+            return channel.queueDeclarePassive(config.getInputQueue())
+                    .getMessageCount();
         } catch (IOException ex) {
-            this.close(channel, ConnectionState.Disconnected, ex);
+            throw new ChannelConnectionException(ex.getMessage(), ex);
+        } finally {
+            if (channel != null && channel.isOpen())
+                try { channel.close(); } catch (IOException ex) {}
         }
-        return channel;        
     }
-    
-    protected void initializeConfigurations(Channel channel) {
+
+    protected Connection establishConnection(int index) {
+        for (;;) {
+            if (this.disposed)
+                throw new IllegalStateException("The connector has " +
+                        "already been disposed.");
+            CompletableFuture<Connection> attempt = this.connections.get(index);
+            if (attempt != null)
+                return this.awaitConnection(attempt);
+            attempt = new CompletableFuture<>();
+            if (this.connections.compareAndSet(index, null, attempt))
+                return this.openConnection(index, attempt);
+        }
+    }
+
+    private Connection awaitConnection(
+            CompletableFuture<Connection> attempt) {
+        try {
+            return attempt.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            throw new ChannelConnectionException(cause.getMessage(), cause);
+        }
+    }
+
+    private Connection openConnection(int index,
+            CompletableFuture<Connection> attempt) {
+        Connection current = null;
+        Channel channel = null;
+        try {
+            this.states.set(index, ConnectionState.Opening);
+            current = this.factory.newConnection();
+            current.addShutdownListener((cause) -> {
+                boolean lost = !cause.isInitiatedByApplication();
+                if (this.closeConnection(index, attempt, lost ?
+                        ConnectionState.Disconnected : ConnectionState.Closed)
+                        && lost)
+                    this.beginRecovery(index);
+            });
+            channel = current.createChannel();
+            this.initializeConfigurations(index, channel);
+            this.initializePools(index, current);
+            channel.close();
+            if (!this.disposed) {
+                this.states.compareAndSet(index, ConnectionState.Opening,
+                        ConnectionState.Open);
+                this.metrics.connectionOpened(
+                        this.opened.getAndIncrement(index) > 0);
+                attempt.complete(current);
+                this.connectionRestored(index);
+                if (!this.disposed)
+                    return current;
+            }
+        } catch (IOException | RuntimeException ex) {
+            this.metrics.connectionFailed();
+            attempt.completeExceptionally(ex);
+            this.closeConnection(index, attempt,
+                    ConnectionState.Disconnected);
+            if (current != null) {
+                this.disposePools(current);
+                current.abort(this.shutdownTimeout);
+            }
+            throw new ChannelConnectionException(ex.getMessage(), ex);
+        }
+        IllegalStateException disposed = new IllegalStateException(
+                "The connector has already been disposed.");
+        attempt.completeExceptionally(disposed);
+        this.connections.compareAndSet(index, attempt, null);
+        this.states.set(index, ConnectionState.Closed);
+        this.disposePools(current);
+        current.abort(this.shutdownTimeout);
+        throw disposed;
+    }
+
+    protected synchronized void beginRecovery(int index) {
+        if (this.disposed || this.recoveryDelay <= 0)
+            return;
+        this.lost.add(index);
+        if (this.recovering != null)
+            return;
+        if (this.recovery == null)
+            this.recovery = Executors.newSingleThreadScheduledExecutor(
+                    this::newRecoveryThread);
+        this.recovering = new CompletableFuture<>();
+        this.disconnectedAt = System.nanoTime();
+        this.recoveryAttempts = 0;
+        this.scheduleRecovery();
+    }
+
+    private Thread newRecoveryThread(Runnable task) {
+        Thread thread = Executors.defaultThreadFactory().newThread(task);
+        thread.setName(this.metrics.getName() + "-recovery");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void scheduleRecovery() {
+        long delay = Math.min(this.maxRecoveryDelay, this.recoveryDelay <<
+                Math.min(this.recoveryAttempts, 30));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        this.recovery.schedule(this::recover, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void recover() {
+        synchronized (this) {
+            if (this.disposed || this.recovering == null)
+                return;
+            this.recoveryAttempts++;
+        }
+        try {
+            for (Integer index: this.lost) {
+                this.establishConnection(index);
+                this.connectionRestored(index);
+            }
+        } catch (RuntimeException ex) {
+            boolean retry;
+            synchronized (this) {
+                retry = !this.disposed && this.recovering != null;
+                if (retry) {
+                    this.metrics.recoveryAttemptFailed();
+                    this.scheduleRecovery();
+                }
+            }
+            if (!retry)
+                this.endRecovery(false);
+        }
+    }
+
+    private void connectionRestored(int index) {
+        this.lost.remove(index);
+        this.endRecovery(true);
+    }
+
+    private void endRecovery(boolean recovered) {
+        CompletableFuture<Boolean> current;
+        synchronized (this) {
+            current = this.recovering;
+            if (current == null || (recovered && !this.lost.isEmpty()))
+                return;
+            this.recovering = null;
+            if (recovered)
+                this.metrics.recovered(
+                        System.nanoTime() - this.disconnectedAt);
+        }
+        current.complete(recovered);
+    }
+
+    protected void initializeConfigurations(int index, Channel channel)
+            throws IOException {
+        TopologyCache.Declarations declarations = this.topology.begin(channel);
         for (RabbitChannelGroupConfiguration cfg: this.configuration.values())
-            cfg.configureChannel(channel);
+            if (this.assignments.get(cfg.getGroupName()) == index)
+                cfg.configureChannel(declarations);
+        declarations.synchronize();
+    }
+
+    protected void initializePools(int index, Connection connection)
+            throws IOException {
+        for (RabbitChannelGroupConfiguration cfg:
+                this.configuration.values()) {
+            int minChannels = cfg.getMinWorkers();
+            if (this.isShared(cfg))
+                minChannels = (minChannels + this.connectionCount - 1) /
+                        this.connectionCount;
+            else if (this.assignments.get(cfg.getGroupName()) != index)
+                continue;
+            RabbitChannelPool pool = new RabbitChannelPool(connection,
+                    minChannels, cfg.getMaxWorkers());
+            RabbitChannelPool previous = this.pools.put(
+                    poolKey(cfg.getGroupName(), index), pool);
+            if (previous != null)
+                previous.dispose();
+            pool.prewarm();
+        }
     }
     
     @Override
     public void dispose() {
         if (this.disposed)
             return;
+        this.disposed = true;
+        this.metrics.unregister();
+        this.endRecovery(false);
         synchronized (this) {
-            this.disposed = true;
-            this.close(null, ConnectionState.Closed, null);
+            if (this.recovery != null)
+                this.recovery.shutdownNow();
         }
+        for (int i = 0; i < this.connectionCount; i++)
+            this.close(i, null, ConnectionState.Closed, null);
     }
 
-    protected void close(Channel channel, ConnectionState state, Exception ex) {
-        this.currentState = ConnectionState.Closing;
+    protected void close(int index, Channel channel, ConnectionState state,
+            Exception ex) {
+        this.states.set(index, ConnectionState.Closing);
 	if (channel != null) 
             try { channel.abort(); } catch (IOException e) {}
-        this.tryAbortConnection();
-        this.connection = null;
-        this.currentState = state;
+        this.tryAbortConnection(this.connections.getAndSet(index, null));
+        this.states.set(index, state);
         if (ex != null)
             throw new ChannelConnectionException(ex.getMessage(), ex);
     } 
-    
-    private void tryAbortConnection() {
-        Connection currentConnection = this.connection;
+
+    private boolean closeConnection(int index,
+            CompletableFuture<Connection> attempt, ConnectionState state) {
+        if (!this.connections.compareAndSet(index, attempt, null))
+            return false;
+        this.states.set(index, ConnectionState.Closing);
+        this.tryAbortConnection(attempt);
+        this.states.compareAndSet(index, ConnectionState.Closing, state);
+        return true;
+    }
+
+    private void disposePools(Connection current) {
+        this.pools.forEach((name, pool) -> {
+            if (pool.getConnection() == current &&
+                    this.pools.remove(name, pool))
+                pool.dispose();
+        });
+    }
+
+    private void tryAbortConnection(CompletableFuture<Connection> attempt) {
+        Connection currentConnection = attempt == null ||
+                attempt.isCompletedExceptionally() ? null :
+                attempt.getNow(null);
 	if (currentConnection == null)
             return;
+        this.disposePools(currentConnection);
         currentConnection.abort(this.shutdownTimeout);
     }
 }
@@ -0,0 +1,200 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.mogware.messagebus.ChannelGroupConfiguration;
+
+public class RabbitConnectorMetrics implements RabbitConnectorMetricsMBean {
+    private static final String domain = "org.mogware.messagebus.rabbitmq";
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionFailures = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder recoveries = new LongAdder();
+    private final LongAdder failedRecoveryAttempts = new LongAdder();
+    private final LatencyHistogram recoveryTime = new LatencyHistogram();
+    private volatile long lastRecoveryTime;
+    private final List<ObjectName> registered = new ArrayList<>();
+    private final RabbitConnector connector;
+    private final String name;
+
+    public RabbitConnectorMetrics(RabbitConnector connector) {
+        if (connector == null)
+            throw new NullPointerException("connector must not be null");
+        this.connector = connector;
+        this.name = "connector-" + counter.incrementAndGet();
+    }
+
+    public void connectionOpened(boolean reconnect) {
+        this.connectionsOpened.increment();
+        if (reconnect)
+            this.reconnects.increment();
+    }
+
+    public void connectionFailed() {
+        this.connectionFailures.increment();
+    }
+
+    public void recoveryAttemptFailed() {
+        this.failedRecoveryAttempts.increment();
+    }
+
+    public void recovered(long nanos) {
+        this.recoveries.increment();
+        this.recoveryTime.record(nanos);
+        this.lastRecoveryTime = nanos;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public synchronized void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        this.tryRegister(server, this, domain + ":type=Connector,name=" +
+                this.name);
+        for (RabbitChannelGroupConfiguration config: this.getGroups())
+            this.tryRegister(server, config.getMetrics(), domain +
+                    ":type=ChannelGroup,connector=" + this.name + ",name=" +
+                    ObjectName.quote(config.getGroupName()));
+    }
+
+    private void tryRegister(MBeanServer server, Object bean, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            server.registerMBean(bean, objectName);
+            this.registered.add(objectName);
+        } catch (JMException ex) {
+        }
+    }
+
+    public synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName: this.registered)
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException ex) {
+            }
+        this.registered.clear();
+    }
+
+    private List<RabbitChannelGroupConfiguration> getGroups() {
+        List<RabbitChannelGroupConfiguration> groups = new ArrayList<>();
+        for (ChannelGroupConfiguration config:
+                this.connector.getChannelGroups())
+            groups.add((RabbitChannelGroupConfiguration) config);
+        return groups;
+    }
+
+    @Override
+    public String getState() {
+        return String.valueOf(this.connector.getCurrentState());
+    }
+
+    @Override
+    public String[] getChannelGroups() {
+        return this.getGroups().stream()
+                .map((x) -> x.getGroupName())
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return this.connectionsOpened.sum();
+    }
+
+    @Override
+    public long getConnectionFailures() {
+        return this.connectionFailures.sum();
+    }
+
+    @Override
+    public long getReconnects() {
+        return this.reconnects.sum();
+    }
+
+    @Override
+    public int getConnectionCount() {
+        return this.connector.getConnectionCount();
+    }
+
+    @Override
+    public int getOpenConnections() {
+        return this.connector.getOpenConnectionCount();
+    }
+
+    @Override
+    public String getSharding() {
+        return String.valueOf(this.connector.getSharding());
+    }
+
+    @Override
+    public boolean getRecovering() {
+        return this.connector.isRecovering();
+    }
+
+    @Override
+    public long getRecoveries() {
+        return this.recoveries.sum();
+    }
+
+    @Override
+    public long getFailedRecoveryAttempts() {
+        return this.failedRecoveryAttempts.sum();
+    }
+
+    @Override
+    public long getLastRecoveryTimeNanos() {
+        return this.lastRecoveryTime;
+    }
+
+    @Override
+    public double getRecoveryTimeMeanNanos() {
+        return this.recoveryTime.getMean();
+    }
+
+    @Override
+    public long getRecoveryTimeP99Nanos() {
+        return this.recoveryTime.getPercentile(99);
+    }
+
+    @Override
+    public long[] getRecoveryTimeHistogram() {
+        return this.recoveryTime.getBuckets();
+    }
+
+    @Override
+    public long getIdleChannels() {
+        return this.connector.getIdleChannelCount();
+    }
+
+    @Override
+    public long getLeasedChannels() {
+        return this.connector.getLeasedChannelCount();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return this.getGroups().stream()
+                .mapToLong((x) -> x.getMetrics().getMessagesReceived()).sum();
+    }
+
+    @Override
+    public long getMessagesPublished() {
+        return this.getGroups().stream()
+                .mapToLong((x) -> x.getMetrics().getMessagesPublished()).sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return this.getGroups().stream()
+                .mapToLong((x) -> x.getMetrics().getInFlight()).sum();
+    }
+}
@@ -0,0 +1,24 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+public interface RabbitConnectorMetricsMBean {
+    String getState();
+    String[] getChannelGroups();
+    long getConnectionsOpened();
+    long getConnectionFailures();
+    long getReconnects();
+    int getConnectionCount();
+    int getOpenConnections();
+    String getSharding();
+    boolean getRecovering();
+    long getRecoveries();
+    long getFailedRecoveryAttempts();
+    long getLastRecoveryTimeNanos();
+    double getRecoveryTimeMeanNanos();
+    long getRecoveryTimeP99Nanos();
+    long[] getRecoveryTimeHistogram();
+    long getIdleChannels();
+    long getLeasedChannels();
+    long getMessagesReceived();
+    long getMessagesPublished();
+    long getInFlight();
+}
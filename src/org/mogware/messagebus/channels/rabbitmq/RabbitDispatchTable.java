@@ -1,31 +1,160 @@
 package org.mogware.messagebus.channels.rabbitmq;
 
 import java.net.URI;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.mogware.messagebus.DispatchTable;
-import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.normalizeName;
 
 public class RabbitDispatchTable implements DispatchTable {
+    private static final long expirationTickMillis = 1000;
+    private static final int expirationSlots = 512;
+
+    private final ConcurrentMap<Class, Route> routes =
+            new ConcurrentHashMap<>();
+    private final ExpirationWheel<Subscriber> expirations =
+            new ExpirationWheel<>(expirationTickMillis, expirationSlots,
+                    System.currentTimeMillis());
+
     @Override
     public List<URI> getUri(Class messageType) {
         if (messageType == null)
             throw new NullPointerException("messageType must not be null");
-        return Arrays.asList(URI.create("fanout://" +
-                normalizeName(messageType.getName())));
+        this.expire();
+        Route route = this.routes.get(messageType);
+        return route == null ? RoutingMetadata.of(messageType)
+                .getDefaultRoute() : route.addresses;
     }
 
     @Override
     public void addSubscriber(URI subscriber, Class messageType,
             Date expiration) {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber must not be null");
+        if (messageType == null)
+            throw new NullPointerException("messageType must not be null");
+        long expires = expiration == null ? Long.MAX_VALUE :
+                expiration.getTime();
+        if (expires <= System.currentTimeMillis()) {
+            this.remove(subscriber, messageType);
+            return;
+        }
+        this.routes.compute(messageType, (type, route) ->
+                (route != null ? route : new Route(type))
+                        .withSubscriber(subscriber, expires));
+        if (expires != Long.MAX_VALUE)
+            this.expirations.schedule(
+                    new Subscriber(messageType, subscriber), expires);
     }
 
     @Override
     public void addRecipient(URI recipient, Class messageType) {
+        if (recipient == null)
+            throw new NullPointerException("recipient must not be null");
+        if (messageType == null)
+            throw new NullPointerException("messageType must not be null");
+        this.routes.compute(messageType, (type, route) ->
+                (route != null ? route : new Route(type))
+                        .withRecipient(recipient));
     }
 
     @Override
     public void remove(URI address, Class messageType) {
+        if (address == null)
+            throw new NullPointerException("address must not be null");
+        if (messageType != null)
+            this.routes.computeIfPresent(messageType,
+                    (type, route) -> route.without(address));
+        else
+            this.routes.replaceAll((type, route) -> route.without(address));
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        if (this.expirations.due(now))
+            this.expirations.advance(now, (entry) -> this.expire(
+                    entry.getItem(), entry.getExpiration()));
+    }
+
+    private void expire(Subscriber subscriber, long expiration) {
+        this.routes.computeIfPresent(subscriber.messageType,
+                (type, route) -> route.withoutExpired(
+                        subscriber.address, expiration));
+    }
+
+    private static final class Subscriber {
+        private final Class messageType;
+        private final URI address;
+
+        Subscriber(Class messageType, URI address) {
+            this.messageType = messageType;
+            this.address = address;
+        }
+    }
+
+    private static final class Route {
+        private final URI exchange;
+        private final Set<URI> recipients;
+        private final Map<URI, Long> subscribers;
+        private final List<URI> addresses;
+
+        Route(Class messageType) {
+            this(RoutingMetadata.of(messageType).getExchangeAddress(),
+                    Collections.emptySet(), Collections.emptyMap());
+        }
+
+        private Route(URI exchange, Set<URI> recipients,
+                Map<URI, Long> subscribers) {
+            this.exchange = exchange;
+            this.recipients = recipients;
+            this.subscribers = subscribers;
+            Set<URI> all = new LinkedHashSet<>();
+            all.add(exchange);
+            all.addAll(recipients);
+            all.addAll(subscribers.keySet());
+            this.addresses = Collections.unmodifiableList(
+                    new ArrayList<>(all));
+        }
+
+        Route withRecipient(URI recipient) {
+            if (this.recipients.contains(recipient))
+                return this;
+            Set<URI> copy = new LinkedHashSet<>(this.recipients);
+            copy.add(recipient);
+            return new Route(this.exchange, copy, this.subscribers);
+        }
+
+        Route withSubscriber(URI subscriber, long expiration) {
+            Map<URI, Long> copy = new HashMap<>(this.subscribers);
+            copy.put(subscriber, expiration);
+            return new Route(this.exchange, this.recipients, copy);
+        }
+
+        Route withoutExpired(URI subscriber, long expiration) {
+            Long current = this.subscribers.get(subscriber);
+            if (current == null || current > expiration)
+                return this;
+            Map<URI, Long> copy = new HashMap<>(this.subscribers);
+            copy.remove(subscriber);
+            return new Route(this.exchange, this.recipients, copy);
+        }
+
+        Route without(URI address) {
+            if (!this.recipients.contains(address) &&
+                    !this.subscribers.containsKey(address))
+                return this;
+            Set<URI> recipients = new LinkedHashSet<>(this.recipients);
+            recipients.remove(address);
+            Map<URI, Long> subscribers = new HashMap<>(this.subscribers);
+            subscribers.remove(address);
+            return new Route(this.exchange, recipients, subscribers);
+        }
     }
 }
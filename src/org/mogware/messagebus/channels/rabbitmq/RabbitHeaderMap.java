@@ -0,0 +1,131 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class RabbitHeaderMap extends AbstractMap<String, String> {
+    private static final Charset encoding = StandardCharsets.UTF_8;
+    private static final String appIdKey = "x-rabbit-appId";
+    private static final String clusterIdKey = "x-rabbit-clusterId";
+    private static final String userIdKey = "x-rabbit-userId";
+    private static final String typeKey = "x-rabbit-type";
+    private static final String priorityKey = "x-rabbit-priority";
+
+    private final BasicProperties properties;
+    private Map<String, String> materialized;
+
+    public RabbitHeaderMap(BasicProperties properties) {
+        if (properties == null)
+            throw new NullPointerException("properties must not be null");
+        this.properties = properties;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (this.materialized != null)
+            return this.materialized.get(key);
+        return key instanceof String ? this.decode((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (this.materialized != null)
+            return this.materialized.containsKey(key);
+        if (!(key instanceof String))
+            return false;
+        if (isPropertyKey((String) key))
+            return true;
+        Map<String, Object> headers = this.properties.getHeaders();
+        return headers != null && headers.containsKey(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return this.materialize().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        return this.materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        this.materialize().clear();
+    }
+
+    @Override
+    public int size() {
+        return this.materialize().size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return this.materialize().entrySet();
+    }
+
+    private Map<String, String> materialize() {
+        if (this.materialized != null)
+            return this.materialized;
+        Map<String, String> decoded = new HashMap<>();
+        decoded.put(appIdKey, this.decodeProperty(appIdKey));
+        decoded.put(clusterIdKey, this.decodeProperty(clusterIdKey));
+        decoded.put(userIdKey, this.decodeProperty(userIdKey));
+        decoded.put(typeKey, this.decodeProperty(typeKey));
+        decoded.put(priorityKey, this.decodeProperty(priorityKey));
+        Map<String, Object> headers = this.properties.getHeaders();
+        if (headers != null)
+            headers.forEach((key, value) -> decoded.put(key, toString(value)));
+        return this.materialized = decoded;
+    }
+
+    private String decode(String key) {
+        Map<String, Object> headers = this.properties.getHeaders();
+        if (headers != null && headers.containsKey(key))
+            return toString(headers.get(key));
+        return this.decodeProperty(key);
+    }
+
+    private String decodeProperty(String key) {
+        switch (key) {
+            case appIdKey:
+                return this.properties.getAppId();
+            case clusterIdKey:
+                return this.properties.getClusterId();
+            case userIdKey:
+                return this.properties.getUserId();
+            case typeKey:
+                return this.properties.getType();
+            case priorityKey:
+                return toString(this.properties.getPriority());
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isPropertyKey(String key) {
+        switch (key) {
+            case appIdKey:
+            case clusterIdKey:
+            case userIdKey:
+            case typeKey:
+            case priorityKey:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String toString(Object value) {
+        if (value == null)
+            return null;
+        if (value instanceof byte[])
+            return new String((byte[]) value, encoding);
+        return value.toString();
+    }
+}
@@ -1,19 +1,24 @@
 package org.mogware.messagebus.channels.rabbitmq;
 
 import com.rabbitmq.client.AMQP.BasicProperties;
-import com.rabbitmq.client.AMQP.BasicProperties.Builder;
+import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.QueueingConsumer.Delivery;
-import java.nio.charset.Charset;
-import java.time.LocalDateTime;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import org.mogware.messagebus.ChannelMessage;
 import org.mogware.messagebus.DeadLetterException;
 import org.mogware.messagebus.PoisonMessageException;
 import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.getType;
 import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toDateTime;
 import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toEmpty;
+import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toExpiration;
+import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toExpirationMillis;
 import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toGuid;
 import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.toUri;
 import org.mogware.messagebus.serialization.Serializer;
@@ -21,6 +26,9 @@ import org.mogware.messagebus.serialization.SerializationExtensions;
 
 public class RabbitMessageAdapter {
     private final RabbitChannelGroupConfiguration configuration;
+    private final PayloadCompressor compressor = new PayloadCompressor();
+    private final Map<Class, PropertiesTemplate> templates =
+            new ConcurrentHashMap<>();
 
     public RabbitMessageAdapter(RabbitChannelGroupConfiguration config) {
         this.configuration = config;
@@ -30,9 +38,7 @@ public class RabbitMessageAdapter {
         if (message == null)
             throw new NullPointerException("message must not be null");
         try {
-            ChannelMessage result = this.translate(message);
-            this.appendHeaders(result, message.getProperties());
-            return result;
+            return this.translate(message);
         } catch (DeadLetterException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -40,55 +46,67 @@ public class RabbitMessageAdapter {
         }
     }
 
+    protected long throwWhenExpired(BasicProperties properties) {
+        long expiration = toExpirationMillis(properties.getExpiration(),
+                properties.getTimestamp());
+        if (expiration <= System.currentTimeMillis())
+            throw new DeadLetterException(toDateTime(new Date(expiration)));
+        return expiration;
+    }
+
     protected ChannelMessage translate(Delivery message) {
         BasicProperties properties = message.getProperties();
-        LocalDateTime despatched = toDateTime(properties.getTimestamp());
-        LocalDateTime expiration = toDateTime(
-                properties.getExpiration(), despatched);
-        expiration = expiration.isEqual(LocalDateTime.MIN) ?
-                LocalDateTime.MAX : expiration;
-        if (!expiration.isAfter(LocalDateTime.now()))
-            throw new DeadLetterException(expiration);
-        List<Object> payload = this.deserialize(
-                message.getBody(),
-                properties.getType(),
-                properties.getContentType(),
-                properties.getContentEncoding());
-        ChannelMessage channelMessage = new ChannelMessage(
+        long expiration = this.throwWhenExpired(properties);
+        List<Object> payload = this.configuration.getLazyDeserialization() ?
+                new LazyPayload(() -> this.deserialize(message.getBody(),
+                        properties.getType(), properties.getContentType(),
+                        properties.getContentEncoding())) :
+                this.deserialize(
+                        message.getBody(),
+                        properties.getType(),
+                        properties.getContentType(),
+                        properties.getContentEncoding());
+        ChannelMessage channelMessage = new RabbitChannelMessage(
                 toGuid(properties.getMessageId()),
                 toGuid(properties.getCorrelationId()),
                 toUri(properties.getReplyTo()),
-                new HashMap<>(), payload);
-        channelMessage.setDispatched(despatched);
-        channelMessage.setExpiration(expiration);
-        channelMessage.setPersistent(properties.getDeliveryMode() == 2);
+                this.createHeaders(properties), payload,
+                properties.getTimestamp(), expiration);
+        channelMessage.setPersistent(
+                Objects.equals(properties.getDeliveryMode(), 2));
         return channelMessage;
     }
 
     private List<Object> deserialize(byte[] body, String type, String format,
             String encoding) {
-        Object deserialized = SerializationExtensions.deserialize(
-                this.configuration.getSerializer(),
-                body, getType(type), format, encoding);
+        if (PayloadCompressor.isCompressed(encoding)) {
+            body = this.compressor.decompress(body,
+                    this.configuration.getMaxInflatedSize());
+            encoding = PayloadCompressor.toUncompressedEncoding(encoding);
+        }
+        long started = System.nanoTime();
+        Serializer serializer = this.configuration.getSerializer();
+        Object deserialized = serializer instanceof ByteBufferSerializer ?
+                ((ByteBufferSerializer) serializer).deserialize(
+                        ByteBuffer.wrap(body).asReadOnlyBuffer(),
+                        this.resolveType(type), format, encoding) :
+                SerializationExtensions.deserialize(serializer,
+                        body, this.resolveType(type), format, encoding);
+        this.configuration.getMetrics().deserialized(
+                System.nanoTime() - started);
         return (List<Object>) deserialized;
     }
 
-    protected void appendHeaders(ChannelMessage message,
-            BasicProperties properties) {
-        Map<String, String> headers = message.getHeaders();
-        headers.put("x-rabbit-appId", properties.getAppId());
-        headers.put("x-rabbit-clusterId", properties.getClusterId());
-        headers.put("x-rabbit-userId", properties.getUserId());
-        headers.put("x-rabbit-type", properties.getType());
-        headers.put("x-rabbit-priority", properties.getPriority().toString());
-        final Charset encoding = Charset.forName("UTF-8");
-        properties.getHeaders().keySet().stream().forEach((key) -> {
-            Object value = properties.getHeaders().get(key);
-            if (value instanceof Integer)
-                headers.put(key, ((Integer)value).toString());
-            else
-                headers.put(key, new String(((byte[]) value), encoding));
-        });
+    protected Class resolveType(String type) {
+        ClassLoader loader = this.configuration.getClassLoader();
+        if (loader == null)
+            loader = Thread.currentThread().getContextClassLoader();
+        Class resolved = getType(type, loader);
+        return resolved != null ? resolved : getType(type);
+    }
+
+    protected Map<String, String> createHeaders(BasicProperties properties) {
+        return new RabbitHeaderMap(properties);
     }
 
     public Delivery build(ChannelMessage message, BasicProperties properties) {
@@ -96,6 +114,10 @@ public class RabbitMessageAdapter {
             throw new NullPointerException("message must not be null");
         if (properties == null)
             throw new NullPointerException("properties must not be null");
+        List<Object> payload = message.getMessages();
+        if (payload == null || payload.isEmpty() || payload.get(0) == null)
+            throw new IllegalArgumentException("The message must contain " +
+                    "at least one payload and the first must not be null.");
         try {
             return this.translate(message, properties);
         } catch (Exception ex) {
@@ -105,23 +127,84 @@ public class RabbitMessageAdapter {
 
     protected Delivery translate(ChannelMessage message,
             BasicProperties properties) {
-        Serializer serializer = this.configuration.getSerializer();
-        Builder propertiesBuilder = properties.builder();
-        propertiesBuilder.messageId(toEmpty(message.getMessageId()));
-        propertiesBuilder.correlationId(toEmpty(message.getCorrelationId()));
-        propertiesBuilder.appId(this.configuration.getApplicationId());
-        String contentEncoding = serializer.getContentEncoding();
-        propertiesBuilder.contentEncoding(contentEncoding != null ?
-                contentEncoding : "");
-        String contentType = serializer.getContentFormat();
-        if (contentType != null && !contentType.isEmpty())
-            contentType = "application/vnd.nmb.rabbit-msg +" + contentType;
-        propertiesBuilder.contentType(contentType);
+        List<Object> payload = message.getMessages();
+        PropertiesTemplate template = this.getTemplate(
+                payload.get(0).getClass());
+        byte[] body = SerializationExtensions.serialize(
+                template.serializer, payload);
+        String contentEncoding = template.contentEncoding;
+        int threshold = this.configuration.getCompressionThreshold();
+        if (threshold > 0 && body.length >= threshold) {
+            byte[] compressed = this.compressor.compress(body);
+            if (compressed != null) {
+                body = compressed;
+                contentEncoding = template.compressedEncoding;
+            }
+        }
+        Date dispatched = new Date();
+        URI returnAddress = message.getReturnAddress();
+        Map<String, String> headers = message.getHeaders();
 
         return new Delivery(
-                null,
-                propertiesBuilder.build(),
-                null
+                new Envelope(0, false, "", template.routingKey),
+                new BasicProperties(
+                        template.contentType,
+                        contentEncoding,
+                        headers != null ?
+                                new HashMap<String, Object>(headers) : null,
+                        message.getPersistent() ? 2 : 1,
+                        properties.getPriority(),
+                        toEmpty(message.getCorrelationId()),
+                        returnAddress != null ?
+                                returnAddress.toString() : null,
+                        toExpiration(message.getExpiration(), dispatched),
+                        toEmpty(message.getMessageId()),
+                        dispatched,
+                        template.type,
+                        properties.getUserId(),
+                        template.applicationId,
+                        properties.getClusterId()),
+                body
         );
     }
+
+    private PropertiesTemplate getTemplate(Class type) {
+        Serializer serializer = this.configuration.getSerializer();
+        String applicationId = this.configuration.getApplicationId();
+        PropertiesTemplate template = this.templates.get(type);
+        if (template != null && template.serializer == serializer &&
+                Objects.equals(template.applicationId, applicationId))
+            return template;
+        template = new PropertiesTemplate(type, serializer, applicationId,
+                this.configuration.lookupRoutingKey(type));
+        this.templates.put(type, template);
+        return template;
+    }
+
+    private static final class PropertiesTemplate {
+        private final Serializer serializer;
+        private final String applicationId;
+        private final String contentType;
+        private final String contentEncoding;
+        private final String compressedEncoding;
+        private final String routingKey;
+        private final String type;
+
+        PropertiesTemplate(Class type, Serializer serializer,
+                String applicationId, String routingKey) {
+            String contentType = serializer.getContentFormat();
+            if (contentType != null && !contentType.isEmpty())
+                contentType = "application/vnd.nmb.rabbit-msg +" + contentType;
+            String contentEncoding = serializer.getContentEncoding();
+            this.serializer = serializer;
+            this.applicationId = applicationId;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding != null ?
+                    contentEncoding : "";
+            this.compressedEncoding =
+                    PayloadCompressor.toCompressedEncoding(this.contentEncoding);
+            this.routingKey = routingKey;
+            this.type = type.getName();
+        }
+    }
 }
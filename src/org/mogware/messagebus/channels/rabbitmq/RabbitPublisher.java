@@ -0,0 +1,205 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import org.mogware.system.Disposable;
+
+public class RabbitPublisher implements Disposable {
+    private static final int burstSize = 64;
+    private static final long backoffNanos = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long idleNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long closeTimeoutMillis = 5000;
+
+    private final AtomicReferenceArray<Publication> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final RabbitChannel channel;
+    private final Thread thread;
+    private final int mask;
+
+    private volatile Thread waiter;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    public RabbitPublisher(RabbitChannel channel, int capacity,
+            ThreadFactory threadFactory) {
+        if (channel == null)
+            throw new NullPointerException("channel must not be null");
+        if (threadFactory == null)
+            throw new NullPointerException("threadFactory must not be null");
+        if (capacity <= 0)
+            throw new IllegalArgumentException("A positive capacity " +
+                    "is required.");
+        int size = 1;
+        while (size < capacity && size < (1 << 30))
+            size <<= 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            this.sequences.set(i, i);
+        this.mask = size - 1;
+        this.channel = channel;
+        this.thread = threadFactory.newThread(this::drain);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    public int size() {
+        return (int) Math.max(0, this.tail.get() - this.head.get());
+    }
+
+    public void publish(PublicationAddress address, BasicProperties properties,
+            byte[] body, PublisherConfirms.Batch batch) throws IOException {
+        if (address == null)
+            throw new NullPointerException("address must not be null");
+        this.throwWhenFailed();
+        if (this.closed)
+            throw new IllegalStateException("The publisher has already " +
+                    "been disposed.");
+        Publication publication =
+                new Publication(address, properties, body, batch);
+        while (true) {
+            long position = this.tail.get();
+            int index = (int) position & this.mask;
+            long available = this.sequences.get(index) - position;
+            if (available == 0 &&
+                    this.tail.compareAndSet(position, position + 1)) {
+                this.slots.lazySet(index, publication);
+                this.sequences.set(index, position + 1);
+                if (this.sleeping)
+                    LockSupport.unpark(this.thread);
+                return;
+            }
+            if (available < 0) {
+                this.throwWhenFailed();
+                LockSupport.parkNanos(this, backoffNanos);
+            }
+        }
+    }
+
+    public void flush() throws IOException {
+        long target = this.tail.get();
+        this.waiter = Thread.currentThread();
+        try {
+            while (this.written.get() < target) {
+                this.throwWhenFailed();
+                if (!this.thread.isAlive())
+                    throw new IllegalStateException("The publisher " +
+                            "stopped before all messages were written.");
+                LockSupport.unpark(this.thread);
+                LockSupport.parkNanos(this, idleNanos);
+            }
+        } finally {
+            this.waiter = null;
+        }
+        this.throwWhenFailed();
+    }
+
+    private void throwWhenFailed() throws IOException {
+        IOException current = this.failure;
+        if (current != null)
+            throw current;
+    }
+
+    private void drain() {
+        while (true) {
+            int drained = 0;
+            for (Publication next = this.poll(); next != null;
+                    next = drained < burstSize ? this.poll() : null) {
+                this.write(next);
+                this.written.incrementAndGet();
+                drained++;
+            }
+            if (drained > 0) {
+                this.signal();
+                continue;
+            }
+            if (this.closed)
+                break;
+            this.sleeping = true;
+            if (!this.isReadable() && !this.closed)
+                LockSupport.parkNanos(this, idleNanos);
+            this.sleeping = false;
+        }
+        this.signal();
+    }
+
+    private boolean isReadable() {
+        long position = this.head.get();
+        return this.sequences.get((int) position & this.mask) == position + 1;
+    }
+
+    private Publication poll() {
+        long position = this.head.get();
+        int index = (int) position & this.mask;
+        if (this.sequences.get(index) != position + 1)
+            return null;
+        Publication publication = this.slots.get(index);
+        this.slots.lazySet(index, null);
+        this.sequences.set(index, position + this.mask + 1);
+        this.head.set(position + 1);
+        return publication;
+    }
+
+    private void write(Publication publication) {
+        if (this.failure != null)
+            return;
+        try {
+            this.channel.publish(publication.address, publication.properties,
+                    publication.body, publication.batch);
+        } catch (IOException ex) {
+            this.failure = ex;
+        } catch (RuntimeException ex) {
+            this.failure = new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    private void signal() {
+        Thread current = this.waiter;
+        if (current != null)
+            LockSupport.unpark(current);
+    }
+
+    @Override
+    public void dispose() {
+        if (this.closed)
+            return;
+        this.closed = true;
+        LockSupport.unpark(this.thread);
+        if (Thread.currentThread() == this.thread)
+            return;
+        try {
+            this.thread.join(closeTimeoutMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Publication {
+        private final PublicationAddress address;
+        private final BasicProperties properties;
+        private final byte[] body;
+        private final PublisherConfirms.Batch batch;
+
+        Publication(PublicationAddress address, BasicProperties properties,
+                byte[] body, PublisherConfirms.Batch batch) {
+            this.address = address;
+            this.properties = properties;
+            this.body = body;
+            this.batch = batch;
+        }
+    }
+}
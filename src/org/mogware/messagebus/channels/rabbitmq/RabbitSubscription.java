@@ -6,13 +6,46 @@ import org.mogware.system.delegates.Func1;
 import org.mogware.system.threading.TimeSpan;
 
 public class RabbitSubscription implements Disposable {
+    private final Subscription adapter;
+    private volatile boolean disposed;
+
+    public RabbitSubscription(Subscription adapter) {
+        if (adapter == null)
+            throw new NullPointerException("adapter must not be null");
+        this.adapter = adapter;
+    }
 
     public void receive(TimeSpan timeout, Func1<Delivery, Boolean> callback) {
-    }    
-    
+        if (timeout.compareTo(TimeSpan.zero) < 0)
+            throw new IllegalArgumentException("Timeout must be positive");
+        if (callback == null)
+            throw new NullPointerException("callback must not be null");
+        while (!this.disposed) {
+            Delivery delivery = this.adapter.BeginReceive(timeout);
+            if (!callback.call(delivery))
+                break;
+        }
+    }
+
+    public long getQueueingDelay() {
+        return this.adapter.getQueueingDelay();
+    }
+
+    public PrefetchController getPrefetchController() {
+        return this.adapter.getPrefetchController();
+    }
+
+    public void handled(long serviceNanos) {
+        this.adapter.handled(serviceNanos);
+    }
+
+    public void acknowledgeMessages() {
+        this.adapter.AcknowledgeMessages();
+    }
+
     @Override
     public void dispose() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        this.disposed = true;
+        this.adapter.dispose();
     }
-
 }
@@ -1,11 +1,19 @@
 package org.mogware.messagebus.channels.rabbitmq;
 
+import java.util.LinkedList;
+import java.util.List;
 import org.mogware.messagebus.ChannelTransaction;
 import org.mogware.system.delegates.Action1;
 
 public class RabbitTransaction implements ChannelTransaction {
+    private final List<Action1> callbacks = new LinkedList<>();
     private final RabbitChannel channel;
     private final RabbitTransactionType transactionType;
+    private PublisherConfirms.Batch confirms;
+    private boolean committed;
+    private boolean committing;
+    private boolean rolledBack;
+    private boolean disposed;
 
     public RabbitTransaction(RabbitChannel channel,
             RabbitTransactionType transactionType) {
@@ -15,27 +23,104 @@ public class RabbitTransaction implements ChannelTransaction {
 
     @Override
     public boolean getFinished() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return this.committed || this.rolledBack;
+    }
+
+    public PublisherConfirms.Batch getConfirms() {
+        if (this.confirms == null)
+            this.confirms = new PublisherConfirms.Batch();
+        return this.confirms;
     }
 
     @Override
     public void register(Action1 callback) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (callback == null)
+            throw new NullPointerException("callback must not be null");
+        this.throwWhenDisposed();
+        this.throwWhenRolledBack();
+        this.throwWhenCommitted();
+        this.callbacks.add(callback);
     }
 
     @Override
     public void commit() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        this.throwWhenDisposed();
+        this.throwWhenRolledBack();
+        if (this.committed || this.committing)
+            return;
+        this.committing = true;
+        try {
+            this.runCallbacks();
+            if (this.channel.getPublisherConfirms()) {
+                this.commitChannel();
+                this.acknowledgeReceipt();
+            } else {
+                this.acknowledgeReceipt();
+                this.commitChannel();
+            }
+            this.committed = true;
+        } finally {
+            this.committing = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runCallbacks() {
+        for (Action1 callback: this.callbacks)
+            callback.run(this);
+        this.callbacks.clear();
+    }
+
+    protected void acknowledgeReceipt() {
+        if (this.transactionType != RabbitTransactionType.None)
+            this.channel.acknowledgeMessage();
+    }
+
+    protected void commitChannel() {
+        if (this.transactionType == RabbitTransactionType.Full)
+            this.channel.commitTransaction(this.confirms);
     }
 
     @Override
     public void rollback() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        this.throwWhenDisposed();
+        this.throwWhenCommitted();
+        if (this.rolledBack)
+            return;
+        this.rolledBack = true;
+        this.callbacks.clear();
+        this.rollbackChannel();
+    }
+
+    protected void rollbackChannel() {
+        if (this.transactionType == RabbitTransactionType.Full)
+            this.channel.rollbackTransaction();
     }
 
     @Override
     public void dispose() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (this.disposed)
+            return;
+        if (!this.getFinished())
+            this.rollback();
+        this.disposed = true;
+    }
+
+    private void throwWhenDisposed() {
+        if (this.disposed)
+            throw new IllegalStateException("The transaction has already " +
+                    "been disposed.");
     }
 
+    private void throwWhenRolledBack() {
+        if (this.rolledBack)
+            throw new IllegalStateException("The transaction has already " +
+                    "been rolled back.");
+    }
+
+    private void throwWhenCommitted() {
+        if (this.committed || this.committing)
+            throw new IllegalStateException("The transaction has already " +
+                    "been committed.");
+    }
 }
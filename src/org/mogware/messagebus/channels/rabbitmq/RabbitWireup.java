@@ -8,9 +8,17 @@ import org.mogware.system.threading.TimeSpan;
 
 public class RabbitWireup {
     private static final TimeSpan defaultTimeout = TimeSpan.fromSeconds(3);
+    private static final TimeSpan defaultRecoveryDelay =
+            TimeSpan.fromMilliseconds(100);
+    private static final TimeSpan defaultMaxRecoveryDelay =
+            TimeSpan.fromSeconds(30);
     private final List<RabbitChannelGroupConfiguration> configurations =
             new LinkedList<>();
     private TimeSpan shutdownTimeout;
+    private TimeSpan recoveryDelay;
+    private TimeSpan maxRecoveryDelay;
+    private int connectionCount;
+    private RabbitConnectionSharding sharding;
     private FailoverConnectionFactory connectionFactory;
 
     public List<RabbitChannelGroupConfiguration> getChannelGroups() {
@@ -25,6 +33,22 @@ public class RabbitWireup {
         this.shutdownTimeout = value;
     }
 
+    public TimeSpan getRecoveryDelay() {
+        return this.recoveryDelay;
+    }
+
+    public TimeSpan getMaxRecoveryDelay() {
+        return this.maxRecoveryDelay;
+    }
+
+    public int getConnectionCount() {
+        return this.connectionCount;
+    }
+
+    public RabbitConnectionSharding getSharding() {
+        return this.sharding;
+    }
+
     public FailoverConnectionFactory getConnectionFactory() {
         return this.connectionFactory;
     }
@@ -40,6 +64,37 @@ public class RabbitWireup {
         return this;
     }
 
+    public RabbitWireup withAutomaticRecovery(TimeSpan initialDelay,
+            TimeSpan maxDelay) {
+        if (initialDelay.compareTo(TimeSpan.zero) <= 0)
+            throw new IllegalArgumentException("A positive recovery delay " +
+                    "is required.");
+        if (maxDelay.compareTo(initialDelay) < 0)
+            throw new IllegalArgumentException("The maximum recovery delay " +
+                    "must be at least the same as the initial delay.");
+        this.recoveryDelay = initialDelay;
+        this.maxRecoveryDelay = maxDelay;
+        return this;
+    }
+
+    public RabbitWireup withoutAutomaticRecovery() {
+        this.recoveryDelay = null;
+        this.maxRecoveryDelay = null;
+        return this;
+    }
+
+    public RabbitWireup withConnections(int count,
+            RabbitConnectionSharding sharding) {
+        if (sharding == null)
+            throw new NullPointerException("sharding must not be null");
+        if (count <= 0)
+            throw new IllegalArgumentException("At least one connection " +
+                    "is required.");
+        this.connectionCount = count;
+        this.sharding = sharding;
+        return this;
+    }
+
     public RabbitWireup withConnectionFactory(
             FailoverConnectionFactory factory) {
         if (factory == null)
@@ -88,11 +143,17 @@ public class RabbitWireup {
 
     public RabbitConnector build() {
         return new RabbitConnector(this.getConnectionFactory(),
-                this.getShutdownTimeout(), this.configurations);
+                this.getShutdownTimeout(), this.getRecoveryDelay(),
+                this.getMaxRecoveryDelay(), this.getConnectionCount(),
+                this.getSharding(), this.configurations);
     }
 
     public RabbitWireup() {
         this.shutdownTimeout = defaultTimeout;
+        this.recoveryDelay = defaultRecoveryDelay;
+        this.maxRecoveryDelay = defaultMaxRecoveryDelay;
+        this.connectionCount = 1;
+        this.sharding = RabbitConnectionSharding.Group;
         this.connectionFactory = new FailoverConnectionFactory();
     }
 }
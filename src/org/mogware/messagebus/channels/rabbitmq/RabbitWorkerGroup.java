@@ -0,0 +1,192 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.mogware.messagebus.ChannelConnectionException;
+import org.mogware.messagebus.DeliveryContext;
+import org.mogware.messagebus.MessagingChannel;
+import org.mogware.system.Disposable;
+import org.mogware.system.delegates.Action1;
+import org.mogware.system.threading.TimeSpan;
+
+public class RabbitWorkerGroup implements Disposable {
+    private static final long sampleIntervalMillis = 1000;
+    private static final long reconnectDelayMillis = 1000;
+    private static final TimeSpan reconnectDelay =
+            TimeSpan.fromMilliseconds(reconnectDelayMillis);
+
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    private final RabbitConnector connector;
+    private final RabbitChannelGroupConfiguration config;
+    private final ThreadFactory threadFactory;
+    private final ThreadFactory monitorFactory;
+    private final long maxQueueingDelay;
+    private final long coolOff;
+
+    private ScheduledExecutorService monitor;
+    private Action1<DeliveryContext> callback;
+    private long lastSaturated;
+    private volatile boolean disposed;
+
+    public RabbitWorkerGroup(RabbitConnector connector,
+            RabbitChannelGroupConfiguration config) {
+        if (connector == null)
+            throw new NullPointerException("connector must not be null");
+        if (config == null)
+            throw new NullPointerException("config must not be null");
+        this.connector = connector;
+        this.config = config;
+        this.threadFactory = config.getThreadFactory();
+        this.monitorFactory = Executors.defaultThreadFactory();
+        this.maxQueueingDelay = TimeUnit.MILLISECONDS.toNanos(
+                (long) config.getMaxQueueingDelay().getTotalMilliseconds());
+        this.coolOff = TimeUnit.MILLISECONDS.toNanos(
+                (long) config.getWorkerCoolOff().getTotalMilliseconds());
+    }
+
+    public int getWorkerCount() {
+        return this.workers.size();
+    }
+
+    public synchronized void start(Action1<DeliveryContext> callback) {
+        if (callback == null)
+            throw new NullPointerException("callback must not be null");
+        if (this.disposed)
+            throw new IllegalStateException("The worker group has already " +
+                    "been disposed.");
+        if (this.callback != null)
+            throw new IllegalStateException("The worker group has already " +
+                    "been started.");
+        this.callback = callback;
+        this.lastSaturated = System.nanoTime();
+        for (int i = 0; i < this.config.getMinWorkers(); i++)
+            this.addWorker();
+        if (this.config.getDispatchOnly() ||
+                this.config.getMaxWorkers() <= this.config.getMinWorkers())
+            return;
+        this.monitor = Executors.newSingleThreadScheduledExecutor((task) -> {
+            Thread thread = this.monitorFactory.newThread(task);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.monitor.scheduleWithFixedDelay(this::sample,
+                sampleIntervalMillis, sampleIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    protected void sample() {
+        if (this.disposed)
+            return;
+        try {
+            this.scale(this.connector.getMessageCount(
+                    this.config.getGroupName()));
+        } catch (RuntimeException ex) {
+        }
+    }
+
+    private synchronized void scale(long backlog) {
+        if (this.disposed)
+            return;
+        int count = this.workers.size();
+        long now = System.nanoTime();
+        if (backlog > (long) this.config.getBacklogPerWorker() * count ||
+                this.getQueueingDelay() > this.maxQueueingDelay) {
+            this.lastSaturated = now;
+            if (count < this.config.getMaxWorkers())
+                this.addWorker();
+        } else if (count > this.config.getMinWorkers() &&
+                now - this.lastSaturated >= this.coolOff) {
+            this.lastSaturated = now;
+            this.removeWorker();
+        }
+    }
+
+    public long getQueueingDelay() {
+        long total = 0;
+        int count = 0;
+        for (Worker worker: this.workers) {
+            MessagingChannel channel = worker.channel;
+            if (!(channel instanceof RabbitChannel))
+                continue;
+            total += ((RabbitChannel) channel).getQueueingDelay();
+            count++;
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    private void addWorker() {
+        Worker worker = new Worker();
+        this.workers.add(worker);
+        Thread thread = this.threadFactory.newThread(worker);
+        thread.setName(this.config.getGroupName() + "-worker-" +
+                this.counter.incrementAndGet());
+        thread.start();
+    }
+
+    private void removeWorker() {
+        if (this.workers.isEmpty())
+            return;
+        Worker worker = this.workers.remove(this.workers.size() - 1);
+        worker.stop();
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (this.disposed)
+            return;
+        this.disposed = true;
+        if (this.monitor != null)
+            this.monitor.shutdownNow();
+        for (Worker worker: this.workers)
+            worker.stop();
+        this.workers.clear();
+    }
+
+    private final class Worker implements Runnable {
+        private volatile MessagingChannel channel;
+        private volatile boolean stopping;
+
+        @Override
+        public void run() {
+            while (!this.stopping && !disposed) {
+                try {
+                    this.channel = connector.connect(config.getGroupName());
+                    if (this.stopping)
+                        this.channel.beginShutdown();
+                    this.channel.receive(callback);
+                } catch (ChannelConnectionException ex) {
+                    this.pause();
+                } finally {
+                    MessagingChannel current = this.channel;
+                    this.channel = null;
+                    if (current != null)
+                        current.dispose();
+                }
+            }
+        }
+
+        private void pause() {
+            while (connector.isRecovering() && !this.stopping && !disposed)
+                if (connector.awaitRecovery(reconnectDelay))
+                    return;
+            try {
+                Thread.sleep(reconnectDelayMillis);
+            } catch (InterruptedException ex) {
+                this.stopping = true;
+            }
+        }
+
+        public void stop() {
+            this.stopping = true;
+            MessagingChannel current = this.channel;
+            if (current != null)
+                current.beginShutdown();
+        }
+    }
+}
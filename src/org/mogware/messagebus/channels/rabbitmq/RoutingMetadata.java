@@ -0,0 +1,58 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import static org.mogware.messagebus.channels.rabbitmq.ExtensionMethods.normalizeName;
+
+public final class RoutingMetadata {
+    private static final String defaultExchangeType = "fanout";
+    private static final ClassValue<RoutingMetadata> metadata =
+            new ClassValue<RoutingMetadata>() {
+        @Override
+        protected RoutingMetadata computeValue(Class<?> type) {
+            return new RoutingMetadata(type);
+        }
+    };
+
+    private final String exchangeName;
+    private final String exchangeType;
+    private final String routingKey;
+    private volatile List<URI> defaultRoute;
+
+    private RoutingMetadata(Class<?> type) {
+        this.exchangeName = normalizeName(type.getName());
+        this.exchangeType = defaultExchangeType;
+        this.routingKey = this.exchangeName;
+    }
+
+    public static RoutingMetadata of(Class type) {
+        if (type == null)
+            throw new NullPointerException("type must not be null");
+        return metadata.get(type);
+    }
+
+    public String getExchangeName() {
+        return this.exchangeName;
+    }
+
+    public String getExchangeType() {
+        return this.exchangeType;
+    }
+
+    public String getRoutingKey() {
+        return this.routingKey;
+    }
+
+    public URI getExchangeAddress() {
+        return this.getDefaultRoute().get(0);
+    }
+
+    public List<URI> getDefaultRoute() {
+        List<URI> route = this.defaultRoute;
+        if (route == null)
+            this.defaultRoute = route = Collections.singletonList(
+                    URI.create(this.exchangeType + "://" + this.exchangeName));
+        return route;
+    }
+}
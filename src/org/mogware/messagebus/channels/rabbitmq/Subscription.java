@@ -1,63 +1,181 @@
 package org.mogware.messagebus.channels.rabbitmq;
 
+import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.QueueingConsumer;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.QueueingConsumer.Delivery;
+import com.rabbitmq.client.ShutdownSignalException;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.mogware.messagebus.ChannelConnectionException;
 import org.mogware.system.Disposable;
 import org.mogware.system.threading.TimeSpan;
 
 public class Subscription implements Disposable {
+    private static final int defaultBufferSize = 1024;
+
     private final Channel channel;
+    private final DeliveryRingBuffer buffer;
+    private final AckCoalescer acknowledgements;
+    private final PrefetchController prefetch;
+    private final RabbitChannelGroupMetrics metrics;
+    private final int fixedPrefetch;
+    private final boolean releaseOnReceipt;
+    private long receivedUpTo;
+    private long releasedUpTo;
     private String consumerTag;
-    private Delivery latestEvent;
+    private volatile Delivery latestEvent;
+    private volatile long queueingDelay;
 
-    private volatile QueueingConsumer consumer;
+    private volatile PushConsumer consumer;
 
     public Subscription(Channel channel,
             RabbitChannelGroupConfiguration config) {
         this.channel = channel;
-        this.consumer = new QueueingConsumer(this.channel);
+        this.metrics = config.getMetrics();
+        long channelBuffer = config.getAdaptivePrefetch() ?
+                config.getMaxPrefetch() : config.getChannelBuffer();
+        this.buffer = new DeliveryRingBuffer(channelBuffer > 0 ?
+                (int) channelBuffer : defaultBufferSize);
+        this.acknowledgements = this.createAckCoalescer(config);
+        this.prefetch = this.createPrefetchController(config);
+        this.releaseOnReceipt =
+                config.getTransactionType() == RabbitTransactionType.None;
+        boolean bounded = this.prefetch != null || (!this.releaseOnReceipt &&
+                config.getChannelBuffer() > 0);
+        this.fixedPrefetch = this.prefetch != null ? 0 : bounded ?
+                (int) config.getChannelBuffer() : this.buffer.getCapacity();
+        this.metrics.prefetchChanged(this.getPrefetch());
+        this.consumer = new PushConsumer(this.channel, this.buffer);
         try {
+            if (this.prefetch != null)
+                this.prefetch.apply();
+            else if (!bounded)
+                this.channel.basicQos(0, this.fixedPrefetch, true);
             this.consumerTag = this.channel.basicConsume(
-                    config.getInputQueue(),
-                    config.getTransactionType() == RabbitTransactionType.None,
-                    this.consumer);
+                    config.getInputQueue(), false, this.consumer);
         } catch (IOException ex) {
         }
         this.latestEvent = null;
     }
 
     public Delivery BeginReceive(TimeSpan timeout) {
-        QueueingConsumer consumer = this.consumer;
-        try {
-            if (consumer == null || !this.channel.isOpen())
-                this.mutateLatestEvent(null);
-            else {
-                Delivery delivery = consumer.nextDelivery(
-                        (long) timeout.getTotalMilliseconds());
-                this.mutateLatestEvent(delivery);
-            }
-        } catch (Exception ex) {
+        if (this.consumer != null && !this.channel.isOpen())
+            throw new ChannelConnectionException("The channel to the " +
+                    "broker has been closed.", this.channel.getCloseReason());
+        if (this.consumer == null)
             this.mutateLatestEvent(null);
-        }
+        else
+            this.mutateLatestEvent(this.nextDelivery(timeout));
         return this.latestEvent;
     }
 
-    public void AcknowledgeMessages() {
-        Delivery delivery = this.latestEvent;
-        long tag = delivery == null ? 0 :
-                delivery.getEnvelope().getDeliveryTag();
+    private Delivery nextDelivery(TimeSpan timeout) {
+        Delivery delivery = this.buffer.poll(0, TimeUnit.NANOSECONDS);
+        if (delivery == null) {
+            if (this.prefetch != null)
+                this.prefetch.starved();
+            this.flushAcknowledgements();
+            this.releaseDeliveries();
+            delivery = this.buffer.poll(
+                    (long) timeout.getTotalMilliseconds(),
+                    TimeUnit.MILLISECONDS);
+        }
+        if (delivery == null && this.buffer.getClosed() &&
+                this.consumer != null)
+            throw new ChannelConnectionException("The broker cancelled " +
+                    "the consumer of this subscription.");
+        if (delivery == null)
+            return null;
+        this.metrics.received();
+        long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+        if (this.acknowledgements != null)
+            this.acknowledgements.received(deliveryTag);
+        else if (this.releaseOnReceipt)
+            this.release(deliveryTag);
+        long delay = this.buffer.getLastQueueingDelay();
+        this.queueingDelay += (delay - this.queueingDelay) >> 3;
+        return delivery;
+    }
+
+    private void release(long deliveryTag) {
+        this.receivedUpTo = deliveryTag;
+        if (deliveryTag - this.releasedUpTo >=
+                Math.max(1, this.fixedPrefetch / 2))
+            this.releaseDeliveries();
+    }
+
+    private void releaseDeliveries() {
+        if (this.receivedUpTo <= this.releasedUpTo)
+            return;
         try {
-            this.channel.basicAck(tag, true);
+            this.channel.basicAck(this.receivedUpTo, true);
+            this.releasedUpTo = this.receivedUpTo;
         } catch (IOException ex) {
+            throw new ChannelConnectionException(ex.getMessage(), ex);
         }
     }
 
+    public long getQueueingDelay() {
+        return this.queueingDelay;
+    }
+
+    public int getPrefetch() {
+        return this.prefetch != null ?
+                this.prefetch.getPrefetch() : this.fixedPrefetch;
+    }
+
+    public PrefetchController getPrefetchController() {
+        return this.prefetch;
+    }
+
+    public void handled(long serviceNanos) {
+        if (this.prefetch != null)
+            this.prefetch.handled(serviceNanos, this.queueingDelay);
+    }
+
+    public void AcknowledgeMessages() {
+        Delivery delivery = this.latestEvent;
+        if (delivery == null || this.acknowledgements == null)
+            return;
+        this.acknowledgements.complete(
+                delivery.getEnvelope().getDeliveryTag());
+    }
+
+    public void flushAcknowledgements() {
+        if (this.acknowledgements != null)
+            this.acknowledgements.flush();
+    }
+
+    private AckCoalescer createAckCoalescer(
+            RabbitChannelGroupConfiguration config) {
+        RabbitTransactionType transactionType = config.getTransactionType();
+        if (transactionType == RabbitTransactionType.None)
+            return null;
+        boolean transactional = transactionType ==
+                RabbitTransactionType.Full && !config.getPublisherConfirms();
+        return new AckCoalescer(this.channel,
+                transactional ? 1 : config.getAckBatchSize(),
+                TimeUnit.MILLISECONDS.toNanos((long) config.getAckBatchDelay()
+                        .getTotalMilliseconds()), config.getMetrics());
+    }
+
+    private PrefetchController createPrefetchController(
+            RabbitChannelGroupConfiguration config) {
+        if (!config.getAdaptivePrefetch() ||
+                config.getTransactionType() == RabbitTransactionType.None)
+            return null;
+        return new PrefetchController(this.channel,
+                (int) Math.min(config.getChannelBuffer(), Integer.MAX_VALUE),
+                config.getMinPrefetch(), config.getMaxPrefetch(),
+                TimeUnit.MILLISECONDS.toNanos((long) config
+                        .getMaxQueueingDelay().getTotalMilliseconds()) / 2,
+                config.getMetrics());
+    }
+
     protected void mutateLatestEvent(Delivery delivery) {
-        synchronized(this) {
-            this.latestEvent = delivery;
-        }
+        this.latestEvent = delivery;
     }
 
     @Override
@@ -67,10 +185,45 @@ public class Subscription implements Disposable {
             if (this.consumer != null)
                 shouldCancelConsumer = true;
             this.consumer = null;
+            this.buffer.close();
+            if (this.channel.isOpen()) {
+                this.flushAcknowledgements();
+                this.releaseDeliveries();
+            }
+            if (this.acknowledgements != null)
+                this.acknowledgements.abandon();
+            if (shouldCancelConsumer)
+                this.metrics.prefetchChanged(-this.getPrefetch());
             if (shouldCancelConsumer && this.channel.isOpen())
                 this.channel.basicCancel(this.consumerTag);
             this.consumerTag = null;
-        } catch (IOException ex) {
+        } catch (IOException | ChannelConnectionException ex) {
+        }
+    }
+
+    private static class PushConsumer extends DefaultConsumer {
+        private final DeliveryRingBuffer buffer;
+
+        public PushConsumer(Channel channel, DeliveryRingBuffer buffer) {
+            super(channel);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void handleDelivery(String consumerTag, Envelope envelope,
+                BasicProperties properties, byte[] body) {
+            this.buffer.offer(new Delivery(envelope, properties, body));
+        }
+
+        @Override
+        public void handleCancel(String consumerTag) {
+            this.buffer.close();
+        }
+
+        @Override
+        public void handleShutdownSignal(String consumerTag,
+                ShutdownSignalException sig) {
+            this.buffer.close();
         }
     }
 }
@@ -0,0 +1,174 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import com.rabbitmq.client.AMQP.Queue;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.mogware.messagebus.ChannelConnectionException;
+
+public class TopologyCache {
+    private static final String synchronizationExchange = "amq.direct";
+
+    private final Map<String, Set<String>> endpoints =
+            new ConcurrentHashMap<>();
+
+    public int size() {
+        int size = 0;
+        for (Set<String> applied : this.endpoints.values())
+            size += applied.size();
+        return size;
+    }
+
+    public void clear() {
+        this.endpoints.clear();
+    }
+
+    public Declarations begin(Channel channel) {
+        if (channel == null)
+            throw new NullPointerException("channel must not be null");
+        Set<String> applied = this.endpoints.computeIfAbsent(
+                describe(channel.getConnection()),
+                endpoint -> ConcurrentHashMap.newKeySet());
+        return new Declarations(channel, applied);
+    }
+
+    public static Declarations uncached(Channel channel) {
+        if (channel == null)
+            throw new NullPointerException("channel must not be null");
+        return new Declarations(channel, new HashSet<>());
+    }
+
+    private static String describe(Connection connection) {
+        if (connection == null || connection.getAddress() == null)
+            return "";
+        return connection.getAddress().getHostAddress() + ":" +
+                connection.getPort();
+    }
+
+    public static final class Declarations {
+        private final Set<String> pending = new HashSet<>();
+        private final Set<String> transientQueues = new HashSet<>();
+        private final Channel channel;
+        private final Set<String> applied;
+        private boolean unconfirmed;
+        private Exception failure;
+
+        Declarations(Channel channel, Set<String> applied) {
+            this.channel = channel;
+            this.applied = applied;
+        }
+
+        public Channel getChannel() {
+            return this.channel;
+        }
+
+        public void declareExchange(String exchange, String type,
+                boolean durable, boolean autoDelete,
+                Map<String, Object> arguments) throws IOException {
+            String key = "exchange:" + exchange;
+            if (!this.track(key, durable && !autoDelete) || this.isClosed())
+                return;
+            try {
+                this.channel.exchangeDeclareNoWait(exchange, type, durable,
+                        autoDelete, false, arguments);
+            } catch (ShutdownSignalException ex) {
+                this.failure = ex;
+            }
+            this.unconfirmed = true;
+        }
+
+        public void declareQueue(String queue, boolean durable,
+                boolean exclusive, boolean autoDelete,
+                Map<String, Object> arguments) throws IOException {
+            String key = "queue:" + queue;
+            if (!this.track(key, this.isCacheable(queue, durable, exclusive,
+                    autoDelete)) || this.isClosed())
+                return;
+            try {
+                this.channel.queueDeclareNoWait(queue, durable, exclusive,
+                        autoDelete, arguments);
+            } catch (ShutdownSignalException ex) {
+                this.failure = ex;
+            }
+            this.unconfirmed = true;
+        }
+
+        public Queue.DeclareOk declareQueueAndWait(String queue,
+                boolean durable, boolean exclusive, boolean autoDelete,
+                Map<String, Object> arguments) throws IOException {
+            Queue.DeclareOk declaration = this.channel.queueDeclare(queue,
+                    durable, exclusive, autoDelete, arguments);
+            this.unconfirmed = false;
+            String name = declaration != null ? declaration.getQueue() : queue;
+            if (this.isCacheable(name, durable, exclusive, autoDelete))
+                this.pending.add("queue:" + name);
+            return declaration;
+        }
+
+        public boolean isDeclared(String queue) {
+            String key = "queue:" + queue;
+            return this.applied.contains(key) || this.pending.contains(key);
+        }
+
+        public void bindQueue(String queue, String exchange,
+                String routingKey) throws IOException {
+            String key = "binding:" + queue + ":" + exchange + ":" +
+                    routingKey;
+            if (!this.track(key, !this.transientQueues.contains(queue)) ||
+                    this.isClosed())
+                return;
+            try {
+                this.channel.queueBindNoWait(queue, exchange, routingKey,
+                        null);
+            } catch (ShutdownSignalException ex) {
+                this.failure = ex;
+            }
+            this.unconfirmed = true;
+        }
+
+        public void synchronize() {
+            try {
+                if (this.unconfirmed && !this.isClosed())
+                    this.channel.exchangeDeclarePassive(
+                            synchronizationExchange);
+            } catch (IOException | ShutdownSignalException ex) {
+                this.failure = ex;
+            }
+            Exception cause = this.channel.getCloseReason();
+            if (cause == null)
+                cause = this.failure;
+            if (cause != null || !this.channel.isOpen())
+                throw new ChannelConnectionException(
+                        "The broker rejected the topology declarations.",
+                        cause);
+            this.unconfirmed = false;
+            this.applied.addAll(this.pending);
+            this.pending.clear();
+        }
+
+        private boolean isClosed() {
+            return this.channel.getCloseReason() != null;
+        }
+
+        private boolean isCacheable(String queue, boolean durable,
+                boolean exclusive, boolean autoDelete) {
+            if (durable && !exclusive && !autoDelete && !queue.isEmpty())
+                return true;
+            this.transientQueues.add(queue);
+            return false;
+        }
+
+        private boolean track(String key, boolean cacheable) {
+            if (this.applied.contains(key) || this.pending.contains(key))
+                return false;
+            if (cacheable)
+                this.pending.add(key);
+            return true;
+        }
+    }
+}
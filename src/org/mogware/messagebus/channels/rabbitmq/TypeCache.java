@@ -0,0 +1,73 @@
+package org.mogware.messagebus.channels.rabbitmq;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+public final class TypeCache {
+    private final ConcurrentMap<String, WeakReference<Class>> types =
+            new ConcurrentHashMap<>();
+    private final Queue<String> typeOrder = new ConcurrentLinkedQueue<>();
+    private final ConcurrentMap<String, Boolean> missing =
+            new ConcurrentHashMap<>();
+    private final Queue<String> missingOrder = new ConcurrentLinkedQueue<>();
+    private final WeakReference<ClassLoader> loader;
+    private final int capacity;
+
+    public TypeCache(ClassLoader loader, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("A positive capacity is " +
+                    "required.");
+        this.loader = new WeakReference<>(loader);
+        this.capacity = capacity;
+    }
+
+    public Class resolve(String name) {
+        if (name == null)
+            return null;
+        WeakReference<Class> cached = this.types.get(name);
+        Class type = cached == null ? null : cached.get();
+        if (type != null)
+            return type;
+        if (this.missing.containsKey(name))
+            return null;
+        type = this.load(name);
+        if (type == null)
+            this.store(this.missing, this.missingOrder, name, Boolean.TRUE);
+        else
+            this.store(this.types, this.typeOrder, name,
+                    new WeakReference<>(type));
+        return type;
+    }
+
+    public void register(Class type) {
+        if (type == null)
+            throw new NullPointerException("type must not be null");
+        this.missing.remove(type.getName());
+        this.store(this.types, this.typeOrder, type.getName(),
+                new WeakReference<>(type));
+    }
+
+    private <T> void store(ConcurrentMap<String, T> map, Queue<String> order,
+            String name, T value) {
+        if (map.put(name, value) != null)
+            return;
+        order.offer(name);
+        while (map.size() > this.capacity) {
+            String eldest = order.poll();
+            if (eldest == null)
+                return;
+            map.remove(eldest);
+        }
+    }
+
+    private Class load(String name) {
+        try {
+            return Class.forName(name, true, this.loader.get());
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return null;
+        }
+    }
+}
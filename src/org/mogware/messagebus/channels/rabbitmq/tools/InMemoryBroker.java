@@ -0,0 +1,592 @@
+package org.mogware.messagebus.channels.rabbitmq.tools;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.impl.AMQImpl;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class InMemoryBroker {
+    private static final long pollMillis = 100;
+    private static final long creditWaitMillis = 10;
+
+    private final Map<String, BrokerQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> bindings =
+            new ConcurrentHashMap<>();
+    private final List<BrokerConnection> connections =
+            new CopyOnWriteArrayList<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    private volatile boolean available = true;
+    private volatile boolean closed;
+
+    public Connection newConnection() throws IOException {
+        if (this.closed)
+            throw new IOException("The in-memory broker has been shut down.");
+        if (!this.available)
+            throw new IOException("Connection refused.");
+        BrokerConnection connection = new BrokerConnection();
+        this.connections.add(connection);
+        return connection.proxy;
+    }
+
+    public boolean getAvailable() {
+        return this.available;
+    }
+
+    public void setAvailable(boolean value) {
+        this.available = value;
+    }
+
+    public void dropConnections() {
+        for (BrokerConnection connection: this.connections)
+            connection.shutdown(false);
+    }
+
+    public int getMessageCount(String queue) {
+        BrokerQueue current = this.queues.get(queue);
+        return current == null ? 0 : current.messages.size();
+    }
+
+    public void shutdown() {
+        this.closed = true;
+        for (BrokerQueue queue: this.queues.values())
+            queue.close();
+    }
+
+    private void declareExchange(String exchange) {
+        this.bindings.computeIfAbsent(exchange,
+                (key) -> ConcurrentHashMap.newKeySet());
+    }
+
+    private BrokerQueue declareQueue(String name) {
+        String queue = name == null || name.isEmpty() ?
+                "amq.gen-" + this.counter.incrementAndGet() : name;
+        return this.queues.computeIfAbsent(queue, BrokerQueue::new);
+    }
+
+    private BrokerQueue getQueue(String name) throws IOException {
+        BrokerQueue queue = this.queues.get(name);
+        if (queue == null)
+            throw new IOException("NOT_FOUND - no queue '" + name + "'");
+        return queue;
+    }
+
+    private void bind(String queue, String exchange) throws IOException {
+        this.getQueue(queue);
+        this.declareExchange(exchange);
+        this.bindings.get(exchange).add(queue);
+    }
+
+    private void route(BrokerMessage message) {
+        if (message.exchange.isEmpty()) {
+            BrokerQueue queue = this.queues.get(message.routingKey);
+            if (queue != null)
+                queue.enqueue(message);
+            return;
+        }
+        Set<String> bound = this.bindings.get(message.exchange);
+        if (bound == null)
+            return;
+        for (String name: bound) {
+            BrokerQueue queue = this.queues.get(name);
+            if (queue != null)
+                queue.enqueue(message);
+        }
+    }
+
+    private static Object defaultValue(Class type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        return null;
+    }
+
+    private static final class BrokerMessage {
+        private final String exchange;
+        private final String routingKey;
+        private final BasicProperties properties;
+        private final byte[] body;
+        private final boolean redelivered;
+
+        BrokerMessage(String exchange, String routingKey,
+                BasicProperties properties, byte[] body, boolean redelivered) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.properties = properties;
+            this.body = body;
+            this.redelivered = redelivered;
+        }
+
+        BrokerMessage redeliver() {
+            return new BrokerMessage(this.exchange, this.routingKey,
+                    this.properties, this.body, true);
+        }
+    }
+
+    private final class BrokerQueue implements Runnable {
+        private final LinkedBlockingDeque<BrokerMessage> messages =
+                new LinkedBlockingDeque<>();
+        private final List<BrokerConsumer> consumers =
+                new CopyOnWriteArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition credit = this.lock.newCondition();
+        private final Thread dispatcher;
+        private volatile boolean waiting;
+        private volatile boolean stopped;
+        private int next;
+
+        BrokerQueue(String name) {
+            this.dispatcher = new Thread(this, "in-memory-broker-" + name);
+            this.dispatcher.setDaemon(true);
+            this.dispatcher.start();
+        }
+
+        void enqueue(BrokerMessage message) {
+            this.messages.offerLast(message);
+        }
+
+        void requeue(BrokerMessage message) {
+            this.messages.offerFirst(message.redeliver());
+        }
+
+        void subscribe(BrokerConsumer consumer) {
+            this.consumers.add(consumer);
+            this.signal();
+        }
+
+        void unsubscribe(BrokerConsumer consumer) {
+            this.consumers.remove(consumer);
+        }
+
+        void signal() {
+            if (!this.waiting)
+                return;
+            this.lock.lock();
+            try {
+                this.credit.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void close() {
+            this.stopped = true;
+            this.dispatcher.interrupt();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!this.stopped) {
+                    BrokerMessage message = this.messages.pollFirst(
+                            pollMillis, TimeUnit.MILLISECONDS);
+                    if (message == null)
+                        continue;
+                    BrokerConsumer consumer = this.awaitConsumer();
+                    if (consumer == null || !consumer.deliver(this, message))
+                        this.messages.offerFirst(message);
+                }
+            } catch (InterruptedException ex) {
+            }
+        }
+
+        private BrokerConsumer awaitConsumer() throws InterruptedException {
+            this.lock.lock();
+            try {
+                while (!this.stopped) {
+                    BrokerConsumer consumer = this.nextWithCredit();
+                    if (consumer != null)
+                        return consumer;
+                    this.waiting = true;
+                    this.credit.await(creditWaitMillis, TimeUnit.MILLISECONDS);
+                    this.waiting = false;
+                }
+                return null;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private BrokerConsumer nextWithCredit() {
+            int count = this.consumers.size();
+            for (int i = 0; i < count; i++) {
+                int index = (this.next + i) % count;
+                BrokerConsumer consumer = this.consumers.get(index);
+                if (consumer.hasCredit()) {
+                    this.next = index + 1;
+                    return consumer;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Unacknowledged {
+        private final BrokerQueue queue;
+        private final BrokerMessage message;
+
+        Unacknowledged(BrokerQueue queue, BrokerMessage message) {
+            this.queue = queue;
+            this.message = message;
+        }
+    }
+
+    private static final class BrokerConsumer {
+        private final BrokerChannel channel;
+        private final BrokerQueue queue;
+        private final Consumer consumer;
+        private final String consumerTag;
+        private final boolean autoAck;
+
+        BrokerConsumer(BrokerChannel channel, BrokerQueue queue,
+                Consumer consumer, String consumerTag, boolean autoAck) {
+            this.channel = channel;
+            this.queue = queue;
+            this.consumer = consumer;
+            this.consumerTag = consumerTag;
+            this.autoAck = autoAck;
+        }
+
+        boolean hasCredit() {
+            int prefetch = this.channel.prefetch;
+            return this.autoAck || prefetch == 0 ||
+                    this.channel.outstanding.get() < prefetch;
+        }
+
+        boolean deliver(BrokerQueue source, BrokerMessage message) {
+            if (!this.channel.open)
+                return false;
+            long deliveryTag = this.channel.deliveryTags.incrementAndGet();
+            if (!this.autoAck) {
+                this.channel.unacknowledged.put(deliveryTag,
+                        new Unacknowledged(source, message));
+                this.channel.outstanding.incrementAndGet();
+            }
+            try {
+                this.consumer.handleDelivery(this.consumerTag,
+                        new Envelope(deliveryTag, message.redelivered,
+                                message.exchange, message.routingKey),
+                        message.properties, message.body);
+            } catch (IOException | RuntimeException ex) {
+            }
+            return true;
+        }
+    }
+
+    private final class BrokerConnection implements InvocationHandler {
+        private final List<BrokerChannel> channels =
+                new CopyOnWriteArrayList<>();
+        private final List<ShutdownListener> listeners =
+                new CopyOnWriteArrayList<>();
+        private final AtomicInteger channelNumbers = new AtomicInteger();
+        private final Connection proxy;
+        private volatile ShutdownSignalException closeReason;
+
+        BrokerConnection() {
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class[] { Connection.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args)
+                throws Throwable {
+            switch (method.getName()) {
+                case "createChannel":
+                    if (this.closeReason != null || closed)
+                        throw new IOException("The connection is closed.");
+                    BrokerChannel channel = new BrokerChannel(this,
+                            this.channelNumbers.incrementAndGet());
+                    this.channels.add(channel);
+                    return channel.proxy;
+                case "isOpen":
+                    return this.closeReason == null && !closed;
+                case "getCloseReason":
+                    return this.closeReason;
+                case "close":
+                case "abort":
+                    this.shutdown(true);
+                    return null;
+                case "addShutdownListener":
+                    this.listeners.add((ShutdownListener) args[0]);
+                    return null;
+                case "removeShutdownListener":
+                    this.listeners.remove((ShutdownListener) args[0]);
+                    return null;
+                case "getServerProperties":
+                case "getClientProperties":
+                    return Collections.emptyMap();
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "equals":
+                    return target == args[0];
+                case "toString":
+                    return "InMemoryConnection@" +
+                            System.identityHashCode(target);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private void shutdown(boolean initiatedByApplication) {
+            if (this.closeReason != null)
+                return;
+            this.closeReason = new ShutdownSignalException(
+                    true, initiatedByApplication, null, this.proxy);
+            connections.remove(this);
+            for (BrokerChannel channel: this.channels)
+                channel.shutdown(this.closeReason);
+            for (ShutdownListener listener: this.listeners)
+                listener.shutdownCompleted(this.closeReason);
+        }
+    }
+
+    private final class BrokerChannel implements InvocationHandler {
+        private final ConcurrentNavigableMap<Long, Unacknowledged>
+                unacknowledged = new ConcurrentSkipListMap<>();
+        private final List<BrokerConsumer> consumers =
+                new CopyOnWriteArrayList<>();
+        private final List<ConfirmListener> confirmListeners =
+                new CopyOnWriteArrayList<>();
+        private final List<ShutdownListener> listeners =
+                new CopyOnWriteArrayList<>();
+        private final AtomicLong deliveryTags = new AtomicLong();
+        private final AtomicLong publishSeqNo = new AtomicLong(1);
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final BrokerConnection connection;
+        private final int channelNumber;
+        private final Channel proxy;
+        private volatile ShutdownSignalException closeReason;
+        private volatile boolean open = true;
+        private volatile boolean confirms;
+        private volatile int prefetch;
+
+        BrokerChannel(BrokerConnection connection, int channelNumber) {
+            this.connection = connection;
+            this.channelNumber = channelNumber;
+            this.proxy = (Channel) Proxy.newProxyInstance(
+                    Channel.class.getClassLoader(),
+                    new Class[] { Channel.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "equals":
+                    return target == args[0];
+                case "toString":
+                    return "InMemoryChannel#" + this.channelNumber;
+                case "isOpen":
+                    return this.open;
+                case "getCloseReason":
+                    return this.closeReason;
+                case "getChannelNumber":
+                    return this.channelNumber;
+                case "getConnection":
+                    return this.connection.proxy;
+                case "close":
+                case "abort":
+                    this.shutdown(new ShutdownSignalException(
+                            false, true, null, this.proxy));
+                    return null;
+                case "addShutdownListener":
+                    this.listeners.add((ShutdownListener) args[0]);
+                    return null;
+                case "removeShutdownListener":
+                    this.listeners.remove((ShutdownListener) args[0]);
+                    return null;
+                case "addConfirmListener":
+                    this.confirmListeners.add((ConfirmListener) args[0]);
+                    return null;
+                case "removeConfirmListener":
+                    return this.confirmListeners.remove(
+                            (ConfirmListener) args[0]);
+                default:
+                    break;
+            }
+            if (!this.open)
+                throw new IOException("The channel is closed.");
+            switch (name) {
+                case "exchangeDeclare":
+                case "exchangeDeclareNoWait":
+                case "exchangeDeclarePassive":
+                    declareExchange((String) args[0]);
+                    return null;
+                case "queueDeclare":
+                    BrokerQueue queue = declareQueue(
+                            args == null ? null : (String) args[0]);
+                    return this.declareOk(queue);
+                case "queueDeclareNoWait":
+                    declareQueue((String) args[0]);
+                    return null;
+                case "queueDeclarePassive":
+                    return this.declareOk(getQueue((String) args[0]));
+                case "queueBind":
+                case "queueBindNoWait":
+                    bind((String) args[0], (String) args[1]);
+                    return null;
+                case "queuePurge":
+                    BrokerQueue purged = getQueue((String) args[0]);
+                    int count = purged.messages.size();
+                    purged.messages.clear();
+                    return new AMQImpl.Queue.PurgeOk(count);
+                case "basicQos":
+                    this.prefetch = (Integer) args[args.length == 3 ? 1 : 0];
+                    this.signalQueues();
+                    return null;
+                case "basicConsume":
+                    return this.consume(args);
+                case "basicCancel":
+                    this.cancel((String) args[0]);
+                    return null;
+                case "basicPublish":
+                    this.publish(args);
+                    return null;
+                case "basicAck":
+                    this.acknowledge((Long) args[0], (Boolean) args[1], false);
+                    return null;
+                case "basicNack":
+                    this.acknowledge((Long) args[0], (Boolean) args[1],
+                            (Boolean) args[2]);
+                    return null;
+                case "basicReject":
+                    this.acknowledge((Long) args[0], false, (Boolean) args[1]);
+                    return null;
+                case "basicRecover":
+                    this.requeueAll();
+                    return null;
+                case "confirmSelect":
+                    this.confirms = true;
+                    return null;
+                case "getNextPublishSeqNo":
+                    return this.confirms ? this.publishSeqNo.get() : 0L;
+                case "waitForConfirms":
+                    return true;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private AMQImpl.Queue.DeclareOk declareOk(BrokerQueue queue) {
+            String name = null;
+            for (Map.Entry<String, BrokerQueue> entry: queues.entrySet())
+                if (entry.getValue() == queue)
+                    name = entry.getKey();
+            return new AMQImpl.Queue.DeclareOk(name,
+                    queue.messages.size(), queue.consumers.size());
+        }
+
+        private String consume(Object[] args) throws IOException {
+            BrokerQueue queue = getQueue((String) args[0]);
+            boolean autoAck = args.length > 2 && (Boolean) args[1];
+            Consumer consumer = (Consumer) args[args.length - 1];
+            String consumerTag = "amq.ctag-" + counter.incrementAndGet();
+            BrokerConsumer subscription = new BrokerConsumer(
+                    this, queue, consumer, consumerTag, autoAck);
+            this.consumers.add(subscription);
+            consumer.handleConsumeOk(consumerTag);
+            queue.subscribe(subscription);
+            return consumerTag;
+        }
+
+        private void cancel(String consumerTag) {
+            for (BrokerConsumer consumer: this.consumers) {
+                if (!consumer.consumerTag.equals(consumerTag))
+                    continue;
+                this.consumers.remove(consumer);
+                consumer.queue.unsubscribe(consumer);
+                consumer.consumer.handleCancelOk(consumerTag);
+            }
+        }
+
+        private void publish(Object[] args) throws IOException {
+            long sequence = this.confirms ?
+                    this.publishSeqNo.getAndIncrement() : 0;
+            route(new BrokerMessage((String) args[0], (String) args[1],
+                    (BasicProperties) args[args.length - 2],
+                    (byte[]) args[args.length - 1], false));
+            if (!this.confirms)
+                return;
+            for (ConfirmListener listener: this.confirmListeners)
+                listener.handleAck(sequence, false);
+        }
+
+        private void acknowledge(long deliveryTag, boolean multiple,
+                boolean requeue) {
+            List<Unacknowledged> settled = new ArrayList<>();
+            if (multiple) {
+                ConcurrentNavigableMap<Long, Unacknowledged> head =
+                        this.unacknowledged.headMap(deliveryTag, true);
+                for (Map.Entry<Long, Unacknowledged> entry =
+                        head.pollFirstEntry(); entry != null;
+                        entry = head.pollFirstEntry())
+                    settled.add(entry.getValue());
+            } else {
+                Unacknowledged entry = this.unacknowledged.remove(deliveryTag);
+                if (entry != null)
+                    settled.add(entry);
+            }
+            this.outstanding.addAndGet(-settled.size());
+            for (Unacknowledged entry: settled)
+                if (requeue)
+                    entry.queue.requeue(entry.message);
+            this.signalQueues();
+        }
+
+        private void requeueAll() {
+            this.acknowledge(Long.MAX_VALUE, true, true);
+        }
+
+        private void signalQueues() {
+            for (BrokerConsumer consumer: this.consumers)
+                consumer.queue.signal();
+        }
+
+        void shutdown(ShutdownSignalException reason) {
+            if (!this.open)
+                return;
+            this.open = false;
+            this.closeReason = reason;
+            this.connection.channels.remove(this);
+            for (BrokerConsumer consumer: this.consumers) {
+                consumer.queue.unsubscribe(consumer);
+                consumer.consumer.handleShutdownSignal(
+                        consumer.consumerTag, reason);
+            }
+            this.requeueAll();
+            this.consumers.clear();
+            for (ShutdownListener listener: this.listeners)
+                listener.shutdownCompleted(reason);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.mogware.messagebus.channels.rabbitmq.tools;
+
+import com.rabbitmq.client.Connection;
+import java.io.IOException;
+import org.mogware.messagebus.channels.rabbitmq.FailoverConnectionFactory;
+
+public class InMemoryConnectionFactory extends FailoverConnectionFactory {
+    private final InMemoryBroker broker;
+
+    public InMemoryConnectionFactory(InMemoryBroker broker) {
+        if (broker == null)
+            throw new NullPointerException("broker must not be null");
+        this.broker = broker;
+    }
+
+    public InMemoryBroker getBroker() {
+        return this.broker;
+    }
+
+    @Override
+    public Connection newConnection() throws IOException {
+        return this.broker.newConnection();
+    }
+}
@@ -0,0 +1,52 @@
+package org.mogware.messagebus.channels.rabbitmq.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import org.mogware.messagebus.serialization.Serializer;
+
+public class PerfSerializer implements Serializer {
+    @Override
+    public String getContentEncoding() {
+        return "";
+    }
+
+    @Override
+    public String getContentFormat() {
+        return "application/octet-stream";
+    }
+
+    @Override
+    public void serialize(OutputStream output, Object graph) {
+        if (output == null)
+            throw new NullPointerException("output must not be null");
+        Object payload = graph instanceof List && !((List) graph).isEmpty() ?
+                ((List) graph).get(0) : graph;
+        if (!(payload instanceof byte[]))
+            throw new IllegalArgumentException("Only raw byte payloads " +
+                    "are supported.");
+        try {
+            output.write((byte[]) payload);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public Object deserialize(InputStream input, Class type, String format,
+            String contentEncoding) {
+        if (input == null)
+            throw new NullPointerException("input must not be null");
+        try {
+            List<Object> payload = new ArrayList<>(1);
+            payload.add(IOUtils.toByteArray(input));
+            return payload;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
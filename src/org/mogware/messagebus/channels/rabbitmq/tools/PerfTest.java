@@ -0,0 +1,409 @@
+package org.mogware.messagebus.channels.rabbitmq.tools;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.mogware.messagebus.ChannelConnectionException;
+import org.mogware.messagebus.ChannelEnvelope;
+import org.mogware.messagebus.ChannelMessage;
+import org.mogware.messagebus.DeliveryContext;
+import org.mogware.messagebus.MessagingChannel;
+import org.mogware.messagebus.channels.rabbitmq.FailoverConnectionFactory;
+import org.mogware.messagebus.channels.rabbitmq.LatencyHistogram;
+import org.mogware.messagebus.channels.rabbitmq.RabbitChannelGroupConfiguration;
+import org.mogware.messagebus.channels.rabbitmq.RabbitConnectionSharding;
+import org.mogware.messagebus.channels.rabbitmq.RabbitConnector;
+import org.mogware.messagebus.channels.rabbitmq.RabbitTransactionType;
+import org.mogware.messagebus.channels.rabbitmq.RabbitWireup;
+import org.mogware.messagebus.channels.rabbitmq.RabbitWorkerGroup;
+import org.mogware.system.Guid;
+import org.mogware.system.threading.TimeSpan;
+
+public class PerfTest {
+    private static final String producerGroup = "perf-producer";
+    private static final String consumerGroup = "perf-consumer";
+    private static final String sentHeader = "x-perf-sent";
+    private static final long reportIntervalMillis = 1000;
+    private static final long reconnectDelayMillis = 1000;
+    private static final long drainTimeoutMillis = 5000;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final AtomicReference<LatencyHistogram> intervalLatency =
+            new AtomicReference<>(new LatencyHistogram());
+    private final List<Thread> producers = new ArrayList<>();
+
+    private String endpoints;
+    private String queue = "perf-test";
+    private RabbitTransactionType transactionType =
+            RabbitTransactionType.Acknowledge;
+    private RabbitConnectionSharding sharding =
+            RabbitConnectionSharding.Group;
+    private int connectionCount = 1;
+    private int producerCount = 1;
+    private int consumerCount = 1;
+    private int messageSize = 1024;
+    private int prefetch = 1024;
+    private int minPrefetch;
+    private int maxPrefetch;
+    private int commitBatch = 1;
+    private int ackBatch;
+    private int publishBuffer;
+    private int compressionThreshold;
+    private int rate;
+    private int seconds = 10;
+    private boolean confirms;
+    private volatile boolean stopping;
+    private byte[] payload;
+
+    public static void main(String[] args) {
+        Options options = createOptions();
+        try {
+            CommandLine line = new GnuParser().parse(options, args);
+            if (line.hasOption("h")) {
+                usage(options);
+                return;
+            }
+            new PerfTest().configure(line).run();
+        } catch (ParseException | IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            usage(options);
+            System.exit(1);
+        }
+    }
+
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption("h", "help", false, "show usage");
+        options.addOption("u", "uri", true, "broker endpoints separated by " +
+                "'|'; an in-memory broker is used when omitted");
+        options.addOption("Q", "queue", true, "queue name");
+        options.addOption("x", "producers", true, "producer count");
+        options.addOption("y", "consumers", true, "consumer count");
+        options.addOption("s", "size", true, "message size in bytes");
+        options.addOption("t", "transaction", true,
+                "transaction type: None, Acknowledge or Full");
+        options.addOption("q", "prefetch", true, "consumer prefetch count");
+        options.addOption("a", "adaptive-prefetch", true,
+                "adaptive prefetch bounds as min:max");
+        options.addOption("c", "confirm", false, "use publisher confirms " +
+                "with Full transactions");
+        options.addOption("b", "commit-batch", true,
+                "messages sent per producer commit");
+        options.addOption("k", "ack-batch", true,
+                "acknowledgements coalesced per consumer");
+        options.addOption("P", "publish-buffer", true,
+                "asynchronous publish buffer size");
+        options.addOption("C", "compress", true,
+                "compress payloads of at least this many bytes");
+        options.addOption("r", "rate", true,
+                "messages per second per producer");
+        options.addOption("n", "connections", true,
+                "broker connections per connector");
+        options.addOption("S", "sharding", true,
+                "channel sharding across connections (Group, Load)");
+        options.addOption("z", "time", true, "run duration in seconds");
+        return options;
+    }
+
+    private static void usage(Options options) {
+        new HelpFormatter().printHelp("PerfTest", options);
+    }
+
+    private static int parse(CommandLine line, String option, int value,
+            int minimum) {
+        String text = line.getOptionValue(option);
+        if (text == null)
+            return value;
+        try {
+            value = Integer.parseInt(text.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Option -" + option +
+                    " requires a number.", ex);
+        }
+        if (value < minimum)
+            throw new IllegalArgumentException("Option -" + option +
+                    " must be at least " + minimum + ".");
+        return value;
+    }
+
+    protected PerfTest configure(CommandLine line) {
+        this.endpoints = line.getOptionValue("u");
+        this.queue = line.getOptionValue("Q", this.queue);
+        this.producerCount = parse(line, "x", this.producerCount, 0);
+        this.consumerCount = parse(line, "y", this.consumerCount, 0);
+        this.messageSize = parse(line, "s", this.messageSize, 0);
+        this.prefetch = parse(line, "q", this.prefetch, 0);
+        this.commitBatch = parse(line, "b", this.commitBatch, 1);
+        this.ackBatch = parse(line, "k", this.ackBatch, 0);
+        this.publishBuffer = parse(line, "P", this.publishBuffer, 0);
+        this.compressionThreshold = parse(line, "C",
+                this.compressionThreshold, 0);
+        this.rate = parse(line, "r", this.rate, 0);
+        this.seconds = parse(line, "z", this.seconds, 1);
+        this.connectionCount = parse(line, "n", this.connectionCount, 1);
+        this.confirms = line.hasOption("c");
+        if (line.hasOption("t"))
+            this.transactionType = RabbitTransactionType.valueOf(
+                    line.getOptionValue("t").trim());
+        if (line.hasOption("S"))
+            this.sharding = RabbitConnectionSharding.valueOf(
+                    line.getOptionValue("S").trim());
+        if (line.hasOption("a")) {
+            String[] bounds = line.getOptionValue("a").split(":");
+            if (bounds.length != 2)
+                throw new IllegalArgumentException("Option -a requires " +
+                        "bounds as min:max.");
+            this.minPrefetch = Integer.parseInt(bounds[0].trim());
+            this.maxPrefetch = Integer.parseInt(bounds[1].trim());
+        }
+        this.payload = new byte[this.messageSize];
+        new Random().nextBytes(this.payload);
+        return this;
+    }
+
+    public void run() {
+        InMemoryBroker broker = this.endpoints == null ?
+                new InMemoryBroker() : null;
+        FailoverConnectionFactory factory = broker != null ?
+                new InMemoryConnectionFactory(broker) :
+                new FailoverConnectionFactory().addEndpoints(this.endpoints);
+        RabbitConnector connector = new RabbitWireup()
+                .withConnectionFactory(factory)
+                .withConnections(this.connectionCount, this.sharding)
+                .addChannelGroup(this::configureConsumer)
+                .addChannelGroup(this::configureProducer)
+                .build();
+        RabbitWorkerGroup consumers = null;
+        try {
+            connector.connect(producerGroup).dispose();
+            if (this.consumerCount > 0) {
+                consumers = new RabbitWorkerGroup(connector,
+                        this.findGroup(connector, consumerGroup));
+                consumers.start(this::consume);
+            }
+            long started = System.nanoTime();
+            for (int i = 0; i < this.producerCount; i++)
+                this.startProducer(connector, i + 1);
+            this.report(started);
+            this.stopProducers();
+            long stopped = System.nanoTime();
+            if (consumers != null)
+                this.drain();
+            this.summarize(stopped - started, System.nanoTime() - started);
+        } finally {
+            if (consumers != null)
+                consumers.dispose();
+            connector.dispose();
+            if (broker != null)
+                broker.shutdown();
+        }
+    }
+
+    private void configureConsumer(RabbitChannelGroupConfiguration config) {
+        config.withGroupName(consumerGroup)
+                .withInputQueue(this.queue, false)
+                .withCleanQueue()
+                .withTransaction(this.transactionType)
+                .withSerializer(new PerfSerializer())
+                .withChannelBuffer(this.prefetch);
+        if (this.consumerCount > 0)
+            config.withWorkers(this.consumerCount, this.consumerCount);
+        if (this.maxPrefetch > 0)
+            config.withAdaptivePrefetch(this.minPrefetch, this.maxPrefetch);
+        if (this.ackBatch > 1)
+            config.withAcknowledgementBatching(this.ackBatch,
+                    TimeSpan.fromMilliseconds(10));
+    }
+
+    private void configureProducer(RabbitChannelGroupConfiguration config) {
+        config.withGroupName(producerGroup)
+                .withDispatchOnly()
+                .withWorkers(Math.max(1, this.producerCount),
+                        Math.max(1, this.producerCount))
+                .withTransaction(this.transactionType)
+                .withSerializer(new PerfSerializer());
+        if (this.confirms)
+            config.withPublisherConfirms(TimeSpan.fromSeconds(30));
+        if (this.publishBuffer > 0)
+            config.withAsyncPublishing(this.publishBuffer);
+        if (this.compressionThreshold > 0)
+            config.withCompression(this.compressionThreshold);
+    }
+
+    private RabbitChannelGroupConfiguration findGroup(
+            RabbitConnector connector, String name) {
+        for (Object config: connector.getChannelGroups()) {
+            RabbitChannelGroupConfiguration group =
+                    (RabbitChannelGroupConfiguration) config;
+            if (group.getGroupName().equals(name))
+                return group;
+        }
+        throw new IllegalArgumentException("Could not find a channel " +
+                "group named '" + name + "'.");
+    }
+
+    private void consume(DeliveryContext context) {
+        String stamp = context.getCurrentMessage().getHeaders().get(sentHeader);
+        if (stamp != null) {
+            long latency = System.nanoTime() - Long.parseLong(stamp);
+            this.totalLatency.record(latency);
+            this.intervalLatency.get().record(latency);
+        }
+        context.getCurrentTransaction().commit();
+        this.received.increment();
+    }
+
+    private void startProducer(RabbitConnector connector, int number) {
+        Thread thread = new Thread(() -> this.produce(connector),
+                producerGroup + "-" + number);
+        thread.setDaemon(true);
+        this.producers.add(thread);
+        thread.start();
+    }
+
+    private void produce(RabbitConnector connector) {
+        List<URI> recipients = Collections.singletonList(
+                URI.create("direct://default/" + this.queue));
+        long interval = this.rate > 0 ?
+                TimeUnit.SECONDS.toNanos(1) / this.rate : 0;
+        long next = System.nanoTime();
+        while (!this.stopping) {
+            MessagingChannel channel = null;
+            try {
+                channel = connector.connect(producerGroup);
+                int pending = 0;
+                while (!this.stopping) {
+                    if (interval > 0) {
+                        next += interval;
+                        long delay = next - System.nanoTime();
+                        if (delay > 0)
+                            LockSupport.parkNanos(delay);
+                    }
+                    channel.send(new ChannelEnvelope(
+                            this.createMessage(), recipients));
+                    if (++pending < this.commitBatch)
+                        continue;
+                    channel.getCurrentTransaction().commit();
+                    this.sent.add(pending);
+                    pending = 0;
+                }
+                if (pending > 0) {
+                    channel.getCurrentTransaction().commit();
+                    this.sent.add(pending);
+                }
+            } catch (ChannelConnectionException ex) {
+                this.pause();
+            } finally {
+                if (channel != null)
+                    channel.dispose();
+            }
+        }
+    }
+
+    private ChannelMessage createMessage() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(sentHeader, Long.toString(System.nanoTime()));
+        List<Object> messages = new ArrayList<>(1);
+        messages.add(this.payload);
+        return new ChannelMessage(Guid.newGuid(), Guid.empty, null,
+                headers, messages);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(reconnectDelayMillis);
+        } catch (InterruptedException ex) {
+            this.stopping = true;
+        }
+    }
+
+    private void report(long started) {
+        long deadline = started + TimeUnit.SECONDS.toNanos(this.seconds);
+        long lastSent = 0;
+        long lastReceived = 0;
+        long last = started;
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(reportIntervalMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long now = System.nanoTime();
+            long totalSent = this.sent.sum();
+            long totalReceived = this.received.sum();
+            LatencyHistogram latency =
+                    this.intervalLatency.getAndSet(new LatencyHistogram());
+            System.out.println(String.format(
+                    "time: %.3fs, sent: %d msg/s, received: %d msg/s, %s",
+                    (now - started) / 1e9,
+                    perSecond(totalSent - lastSent, now - last),
+                    perSecond(totalReceived - lastReceived, now - last),
+                    describe(latency)));
+            lastSent = totalSent;
+            lastReceived = totalReceived;
+            last = now;
+        }
+    }
+
+    private void stopProducers() {
+        this.stopping = true;
+        for (Thread producer: this.producers) {
+            try {
+                producer.join(drainTimeoutMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        long deadline = System.nanoTime() +
+                TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        while (this.received.sum() < this.sent.sum() &&
+                System.nanoTime() < deadline)
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    private void summarize(long sending, long receiving) {
+        System.out.println(String.format(
+                "sending rate avg: %d msg/s", perSecond(this.sent.sum(),
+                        sending)));
+        System.out.println(String.format(
+                "receiving rate avg: %d msg/s", perSecond(this.received.sum(),
+                        receiving)));
+        System.out.println(describe(this.totalLatency));
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos <= 0 ? 0 : count * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private static String describe(LatencyHistogram latency) {
+        if (latency.getCount() == 0)
+            return "latency: n/a";
+        return String.format("latency mean/median/95th/99th/99.9th: " +
+                "%d/%d/%d/%d/%d us",
+                (long) latency.getMean() / 1000,
+                latency.getPercentile(50) / 1000,
+                latency.getPercentile(95) / 1000,
+                latency.getPercentile(99) / 1000,
+                latency.getPercentile(99.9) / 1000);
+    }
+}